@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 Steven G. Brown
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.slaves.EnvironmentVariablesNodeProperty;
+import hudson.slaves.NodeProperty;
+import jenkins.model.Jenkins;
+
+/**
+ * The variables that are expanded in a {@link FilesFoundTriggerConfig}: the
+ * environment variables of the Jenkins process, overridden by the global
+ * properties. These are merged once, and the result is reused until the
+ * global configuration is saved.
+ *
+ * @author Steven G. Brown
+ */
+final class ExpansionEnvironment {
+
+  /**
+   * The merged variables, or {@code null} if they must be merged again.
+   */
+  private static EnvVars vars;
+
+  /**
+   * The list of global properties from which {@link #vars} was merged.
+   */
+  private static Object source;
+
+  /**
+   * Get the variables to expand.
+   *
+   * @return the variables, which must not be modified
+   */
+  static synchronized EnvVars get() {
+    Jenkins jenkins = Jenkins.getInstance();
+    Object properties = jenkins == null ? null : jenkins.getGlobalNodeProperties();
+    if (vars == null || properties != source) {
+      vars = merge(jenkins);
+      source = properties;
+    }
+    return vars;
+  }
+
+  /**
+   * Discard the merged variables, so that they are merged again when next
+   * needed.
+   */
+  static synchronized void invalidate() {
+    vars = null;
+  }
+
+  private static EnvVars merge(Jenkins jenkins) {
+    EnvVars merged = new EnvVars();
+
+    // Environment variables
+    merged.overrideAll(System.getenv());
+
+    // Global properties
+    if (jenkins != null) {
+      for (NodeProperty<?> property : jenkins.getGlobalNodeProperties()) {
+        if (property instanceof EnvironmentVariablesNodeProperty) {
+          merged.overrideAll(((EnvironmentVariablesNodeProperty) property).getEnvVars());
+        }
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * Discards the merged variables when the global configuration is saved.
+   */
+  @Extension
+  public static final class SaveListener extends SaveableListener {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onChange(Saveable o, XmlFile file) {
+      if (o instanceof Jenkins) {
+        invalidate();
+      }
+    }
+  }
+
+  private ExpansionEnvironment() {
+  }
+}
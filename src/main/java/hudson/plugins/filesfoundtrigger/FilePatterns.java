@@ -0,0 +1,577 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 Steven G. Brown
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.regex.Pattern;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+
+/**
+ * Compiled form of the comma-separated
+ * <a href="http://ant.apache.org/manual/dirtasks.html">Ant-style file
+ * patterns</a> used to select files. Each pattern is split into path segments
+ * once, so that matching a path does not require the patterns to be parsed
+ * again. The include patterns, and likewise the exclude patterns, are then
+ * combined so that a path is compared with all of them in a single pass.
+ *
+ * @author Steven G. Brown
+ */
+final class FilePatterns {
+
+  /**
+   * The maximum number of compiled patterns to retain in this JVM.
+   */
+  private static final int CACHE_SIZE = Integer
+      .getInteger(FilePatterns.class.getName() + ".cacheSize", 1000).intValue();
+
+  /**
+   * Recently compiled patterns, keyed by the include and exclude patterns.
+   * Entries are evicted in least recently used order.
+   */
+  private static final Map<List<String>, FilePatterns> cache =
+      new LinkedHashMap<List<String>, FilePatterns>(16, 0.75f, true) {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<List<String>, FilePatterns> eldest) {
+      return size() > CACHE_SIZE;
+    }
+  };
+
+  /**
+   * Compile the given include and exclude patterns. The compiled patterns are
+   * cached, so that polling does not parse the same patterns repeatedly.
+   *
+   * @param includes
+   *          comma-separated list of patterns of files to include
+   * @param excludes
+   *          comma-separated list of patterns of files to exclude
+   * @return the compiled patterns
+   */
+  static FilePatterns compile(String includes, String excludes) {
+    List<String> key = Arrays.asList(includes, excludes);
+    synchronized (cache) {
+      FilePatterns patterns = cache.get(key);
+      if (patterns != null) {
+        return patterns;
+      }
+    }
+    FilePatterns patterns = new FilePatterns(parse(includes), parse(excludes));
+    synchronized (cache) {
+      cache.put(key, patterns);
+    }
+    return patterns;
+  }
+
+  private static List<Glob> parse(String patterns) {
+    List<Glob> globs = new ArrayList<Glob>();
+    StringTokenizer tokens = new StringTokenizer(patterns, ",");
+    while (tokens.hasMoreTokens()) {
+      globs.add(new Glob(tokens.nextToken().trim()));
+    }
+    return globs;
+  }
+
+  private final List<Glob> includes;
+
+  private final List<Glob> excludes;
+
+  private final Trie includeTrie;
+
+  private final Trie excludeTrie;
+
+  /**
+   * The paths named by the include patterns, or {@code null} if any of them
+   * contains a wildcard.
+   */
+  @CheckForNull
+  private final List<String[]> exactPaths;
+
+  private FilePatterns(List<Glob> includes, List<Glob> excludes) {
+    this.includes = includes;
+    this.excludes = excludes;
+    this.includeTrie = new Trie(includes);
+    this.excludeTrie = new Trie(excludes);
+    this.exactPaths = exactPaths(includes);
+  }
+
+  @CheckForNull
+  private static List<String[]> exactPaths(List<Glob> globs) {
+    Map<String, String[]> paths = new LinkedHashMap<String, String[]>();
+    for (Glob glob : globs) {
+      if (glob.segments == null) {
+        continue;
+      }
+      String[] path = new String[glob.segments.length];
+      for (int i = 0; i < path.length; i++) {
+        String name = glob.segments[i].toString();
+        if (!(glob.segments[i] instanceof Literal) || name.equals(".") || name.equals("..")) {
+          return null;
+        }
+        path[i] = name;
+      }
+      if (path.length > 0) {
+        paths.put(Arrays.toString(path), path);
+      }
+    }
+    return paths.isEmpty() ? null
+        : Collections.unmodifiableList(new ArrayList<String[]>(paths.values()));
+  }
+
+  /**
+   * Get the paths of the files selected by the include patterns, if none of
+   * them contains a wildcard. These files can then be found by checking
+   * whether each path exists, without listing any directories. The exclude
+   * patterns still have to be applied to each path with {@link #matches}.
+   *
+   * @return the segments of each path, relative to the base directory, or
+   *         {@code null} if the include patterns contain wildcards
+   */
+  @CheckForNull
+  List<String[]> getExactPaths() {
+    return exactPaths;
+  }
+
+  /**
+   * Determine whether a file with the given path should be selected.
+   *
+   * @param path
+   *          the segments of the path, relative to the base directory
+   * @return {@code true} if the path matches an include pattern and does not
+   *         match any exclude pattern
+   */
+  boolean matches(String[] path) {
+    return includeTrie.matches(path) && !excludeTrie.matches(path);
+  }
+
+  /**
+   * Determine whether files below the given directory could be selected. This
+   * compares the directory with the leading segments of each include pattern,
+   * so that subtrees which cannot hold any included file are not scanned. A
+   * directory whose whole contents are excluded, such as {@code archive} with
+   * the exclude pattern {@code **}{@code /archive/**}, is not scanned either.
+   *
+   * @param directory
+   *          the segments of the path of the directory, relative to the base
+   *          directory
+   * @return {@code true} if the directory should be scanned
+   */
+  boolean couldMatchBelow(String[] directory) {
+    return !excludeTrie.matchesAllBelow(directory) && includeTrie.couldMatchBelow(directory);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("includes", includes).append("excludes", excludes).toString();
+  }
+
+  /**
+   * A single segment of a pattern.
+   */
+  private abstract static class Segment {
+
+    /**
+     * Segment that matches zero or more directories.
+     */
+    static final Segment ANY_DIRECTORIES = new Segment("**") {
+      @Override
+      boolean matches(String name) {
+        return true;
+      }
+    };
+
+    static Segment compile(String segment) {
+      if (segment.equals("**")) {
+        return ANY_DIRECTORIES;
+      }
+      if (segment.indexOf('*') == -1 && segment.indexOf('?') == -1) {
+        return new Literal(segment);
+      }
+      return new Wildcard(segment);
+    }
+
+    private final String text;
+
+    Segment(String text) {
+      this.text = text;
+    }
+
+    abstract boolean matches(String name);
+
+    @Override
+    public String toString() {
+      return text;
+    }
+  }
+
+  /**
+   * Segment without wildcards.
+   */
+  private static final class Literal extends Segment {
+
+    private final String name;
+
+    Literal(String name) {
+      super(name);
+      this.name = name;
+    }
+
+    @Override
+    boolean matches(String other) {
+      return name.equals(other);
+    }
+  }
+
+  /**
+   * Segment containing the {@code *} or {@code ?} wildcards.
+   */
+  private static final class Wildcard extends Segment {
+
+    private final Pattern regex;
+
+    /**
+     * The text following the wildcard, if this segment consists of {@code *}
+     * followed by literal text, such as {@code *.xml}. Otherwise {@code null}.
+     */
+    final String suffix;
+
+    Wildcard(String segment) {
+      super(segment);
+      String rest = segment.substring(1);
+      this.suffix = segment.charAt(0) == '*' && rest.indexOf('*') == -1
+          && rest.indexOf('?') == -1 ? rest : null;
+      StringBuilder sb = new StringBuilder();
+      StringBuilder literal = new StringBuilder();
+      for (char c : segment.toCharArray()) {
+        if (c == '*' || c == '?') {
+          if (literal.length() > 0) {
+            sb.append(Pattern.quote(literal.toString()));
+            literal.setLength(0);
+          }
+          sb.append(c == '*' ? ".*" : ".");
+        } else {
+          literal.append(c);
+        }
+      }
+      if (literal.length() > 0) {
+        sb.append(Pattern.quote(literal.toString()));
+      }
+      this.regex = Pattern.compile(sb.toString(), Pattern.DOTALL);
+    }
+
+    @Override
+    boolean matches(String name) {
+      return regex.matcher(name).matches();
+    }
+  }
+
+  /**
+   * A single Ant-style pattern, split into segments.
+   */
+  private static final class Glob {
+
+    private final String pattern;
+
+    /**
+     * The segments, or {@code null} if this pattern can never match a relative
+     * path.
+     */
+    final Segment[] segments;
+
+    Glob(String pattern) {
+      this.pattern = pattern;
+      String normalized = pattern.replace('\\', '/');
+      if (normalized.endsWith("/")) {
+        normalized += "**";
+      }
+      if (normalized.startsWith("/")) {
+        // Absolute pattern; the paths being matched are always relative.
+        this.segments = null;
+      } else {
+        List<Segment> list = new ArrayList<Segment>();
+        StringTokenizer tokens = new StringTokenizer(normalized, "/");
+        while (tokens.hasMoreTokens()) {
+          list.add(Segment.compile(tokens.nextToken()));
+        }
+        this.segments = list.toArray(new Segment[list.size()]);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return pattern;
+    }
+  }
+
+  /**
+   * A list of patterns combined into a tree of segments, in which patterns with
+   * the same leading segments share nodes. A path is matched by following the
+   * tree one segment of the path at a time, keeping every node that the path
+   * could have reached so far. Each segment of the path is therefore examined
+   * once for all of the patterns, rather than once for each pattern. Literal
+   * segments and segments such as {@code *.xml} are looked up by name, so
+   * their number does not affect the cost of matching.
+   */
+  private static final class Trie {
+
+    private final Node root = new Node(null);
+
+    Trie(List<Glob> globs) {
+      for (Glob glob : globs) {
+        if (glob.segments != null) {
+          add(glob.segments);
+        }
+      }
+    }
+
+    private void add(Segment[] segments) {
+      Node node = root;
+      for (int i = 0; i < segments.length; i++) {
+        if (i == segments.length - 1 && segments[i] == Segment.ANY_DIRECTORIES) {
+          node.contentsMatched = true;
+        }
+        node = node.child(segments[i]);
+      }
+      node.matched = true;
+    }
+
+    /**
+     * Determine whether the given path matches any of the patterns. The result
+     * is the same as Ant's {@code SelectorUtils.matchPath} for each pattern.
+     */
+    boolean matches(String[] path) {
+      for (Node node : walk(path)) {
+        if (node.matched) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Determine whether a path below the given directory could match any of
+     * the patterns. The result is the same as Ant's
+     * {@code SelectorUtils.matchPatternStart} for each pattern.
+     */
+    boolean couldMatchBelow(String[] directory) {
+      List<Node> nodes = Collections.singletonList(root);
+      for (String name : directory) {
+        List<Node> next = new ArrayList<Node>();
+        for (Node node : nodes) {
+          if (node.anyDirectories != null) {
+            return true;
+          }
+          node.children(name, next);
+        }
+        if (next.isEmpty()) {
+          return false;
+        }
+        nodes = next;
+      }
+      for (Node node : nodes) {
+        if (!node.isLeaf()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Determine whether one of the patterns matches every path below the given
+     * directory. This follows Ant's {@code DirectoryScanner.contentsExcluded}.
+     */
+    boolean matchesAllBelow(String[] directory) {
+      if (root.contentsMatched) {
+        return true;
+      }
+      for (Node node : walk(directory)) {
+        if (node.contentsMatched) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Find the nodes reached by the given path.
+     */
+    private Set<Node> walk(String[] path) {
+      Set<Node> nodes = new HashSet<Node>();
+      root.addTo(nodes);
+      List<Node> children = new ArrayList<Node>();
+      for (String name : path) {
+        Set<Node> next = new HashSet<Node>();
+        for (Node node : nodes) {
+          if (node.segment == Segment.ANY_DIRECTORIES) {
+            // "**" may match this directory as well.
+            node.addTo(next);
+          }
+          node.children(name, children);
+        }
+        for (Node child : children) {
+          child.addTo(next);
+        }
+        children.clear();
+        if (next.isEmpty()) {
+          return next;
+        }
+        nodes = next;
+      }
+      return nodes;
+    }
+  }
+
+  /**
+   * A node of a {@link Trie}.
+   */
+  private static final class Node {
+
+    /**
+     * The segment leading to this node, or {@code null} for the root.
+     */
+    final Segment segment;
+
+    /**
+     * Whether a pattern ends at this node.
+     */
+    boolean matched;
+
+    /**
+     * Whether a pattern ends with {@code **} following this node.
+     */
+    boolean contentsMatched;
+
+    private Map<String, Node> literals;
+
+    private Map<String, Node> suffixes;
+
+    private int longestSuffix;
+
+    private Map<String, Node> wildcards;
+
+    Node anyDirectories;
+
+    Node(Segment segment) {
+      this.segment = segment;
+    }
+
+    /**
+     * Get the child reached by the given segment, adding it if necessary.
+     */
+    Node child(Segment child) {
+      if (child == Segment.ANY_DIRECTORIES) {
+        if (anyDirectories == null) {
+          anyDirectories = new Node(child);
+        }
+        return anyDirectories;
+      }
+      if (child instanceof Literal) {
+        literals = create(literals);
+        return child(literals, child.toString(), child);
+      }
+      String suffix = ((Wildcard) child).suffix;
+      if (suffix != null) {
+        suffixes = create(suffixes);
+        longestSuffix = Math.max(longestSuffix, suffix.length());
+        return child(suffixes, suffix, child);
+      }
+      wildcards = create(wildcards);
+      return child(wildcards, child.toString(), child);
+    }
+
+    private static Map<String, Node> create(Map<String, Node> map) {
+      return map == null ? new HashMap<String, Node>() : map;
+    }
+
+    private static Node child(Map<String, Node> map, String key, Segment segment) {
+      Node node = map.get(key);
+      if (node == null) {
+        node = new Node(segment);
+        map.put(key, node);
+      }
+      return node;
+    }
+
+    /**
+     * Add the children reached by the given file name, other than through
+     * {@code **}, to the given list.
+     */
+    void children(String name, List<Node> result) {
+      if (literals != null) {
+        Node node = literals.get(name);
+        if (node != null) {
+          result.add(node);
+        }
+      }
+      if (suffixes != null) {
+        for (int i = Math.max(0, name.length() - longestSuffix); i <= name.length(); i++) {
+          Node node = suffixes.get(name.substring(i));
+          if (node != null) {
+            result.add(node);
+          }
+        }
+      }
+      if (wildcards != null) {
+        for (Node node : wildcards.values()) {
+          if (node.segment.matches(name)) {
+            result.add(node);
+          }
+        }
+      }
+    }
+
+    /**
+     * Add this node to the given set, together with the nodes that follow it
+     * when {@code **} matches no directories.
+     */
+    void addTo(Set<Node> nodes) {
+      if (nodes.add(this) && anyDirectories != null) {
+        anyDirectories.addTo(nodes);
+      }
+    }
+
+    boolean isLeaf() {
+      return literals == null && suffixes == null && wildcards == null
+          && anyDirectories == null;
+    }
+  }
+}
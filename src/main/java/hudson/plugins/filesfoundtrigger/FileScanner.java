@@ -0,0 +1,628 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 Steven G. Brown
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.CheckForNull;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Throwables;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Directory scanner built on {@link java.nio.file}. The attributes of each
+ * directory entry are read once while walking the tree, and each file is
+ * matched against precompiled {@link FilePatterns}. The files that are found
+ * are the same as those found by Ant's {@code DirectoryScanner}: symbolic links
+ * are followed and unreadable directories are skipped.
+ * <p>
+ * Subdirectories are only scanned if they match the leading segments of an
+ * include pattern, so a pattern such as {@code reports/*.xml} does not cause
+ * the rest of the tree to be walked. If none of the include patterns contains
+ * a wildcard, such as {@code READY} or {@code batch/done.flag}, the files are
+ * found by checking each path directly instead of scanning. Only files whose
+ * names are spelt exactly as in the patterns are found, as when scanning.
+ * <p>
+ * Sibling directories can be listed concurrently by a {@link ForkJoinPool},
+ * which helps on network file systems and spinning disks where several
+ * directory reads can be in flight at once.
+ * <p>
+ * An incremental scan reuses the listing of each directory from the previous
+ * scan if the modification time of the directory has not changed, so that
+ * only the directories where files have been created or deleted are read
+ * again.
+ *
+ * @author Steven G. Brown
+ */
+final class FileScanner {
+
+  /**
+   * Pools used for parallel scans, keyed by their parallelism. These are
+   * shared by all scans in this JVM.
+   */
+  private static final ConcurrentMap<Integer, ForkJoinPool> pools =
+      new ConcurrentHashMap<Integer, ForkJoinPool>();
+
+  /**
+   * Scan the given directory for matching files.
+   *
+   * @param directory
+   *          the base directory, which must exist
+   * @param patterns
+   *          the files to find
+   * @param limit
+   *          stop scanning once this many files have been found
+   * @param sampleSize
+   *          the maximum number of file names to return
+   * @param parallelism
+   *          the maximum number of directories to list concurrently
+   * @param snapshot
+   *          the listings of the previous scan, which are reused for
+   *          directories that have not been modified, or {@code null} to list
+   *          every directory
+   * @param meter
+   *          measures the cost of the scan, which is stopped if it exceeds its
+   *          budget
+   * @return the files found
+   * @throws InterruptedException
+   *           if interrupted while waiting for a parallel scan
+   */
+  static FileSearch.Matches scan(File directory, FilePatterns patterns, int limit,
+      int sampleSize, int parallelism, @CheckForNull Snapshot snapshot,
+      SearchBudget.Meter meter) throws InterruptedException {
+    FileScanner scanner = new FileScanner(patterns, limit, sampleSize, snapshot, meter);
+    Path base = directory.toPath();
+    BasicFileAttributes attributes = null;
+    try {
+      attributes = Files.readAttributes(base, BasicFileAttributes.class);
+    } catch (IOException e) {
+      // Scan anyway; the attributes are only used to detect loops and changes.
+    }
+    Ancestor root = attributes == null ? null : Ancestor.of(attributes, null);
+    if (parallelism > 1) {
+      scanner.scanInParallel(base, attributes, root, parallelism);
+    } else {
+      scanner.scanDirectory(base, attributes, new String[0], "", root, null);
+    }
+    if (snapshot != null) {
+      snapshot.update(scanner.visited, !scanner.stopped);
+    }
+    String[] found = scanner.found.toArray(new String[0]);
+    Arrays.sort(found);
+    if (found.length > limit) {
+      // Parallel tasks may find a few files more than the limit.
+      found = Arrays.copyOf(found, limit);
+    }
+    return new FileSearch.Matches(Math.min(scanner.count.get(), limit), found,
+        scanner.exceeded);
+  }
+
+  /**
+   * Find the files with the given paths. Each path is checked directly, so no
+   * directories are listed.
+   *
+   * @param directory
+   *          the base directory, which must exist
+   * @param patterns
+   *          the patterns, which are used to exclude files
+   * @param paths
+   *          the segments of the path of each file, relative to the base
+   *          directory
+   * @param limit
+   *          stop checking once this many files have been found
+   * @param sampleSize
+   *          the maximum number of file names to return
+   * @param meter
+   *          measures the cost of the search, which is stopped if it exceeds
+   *          its budget
+   * @return the files found
+   */
+  static FileSearch.Matches find(File directory, FilePatterns patterns, List<String[]> paths,
+      int limit, int sampleSize, SearchBudget.Meter meter) {
+    Path base = directory.toPath();
+    List<String> found = new ArrayList<String>();
+    int count = 0;
+    SearchBudget.Limit exceeded = null;
+    for (String[] path : paths) {
+      if (count >= limit) {
+        break;
+      }
+      exceeded = meter.visit();
+      if (exceeded != null) {
+        break;
+      }
+      if (!patterns.matches(path)) {
+        continue;
+      }
+      Path file = base;
+      try {
+        for (String name : path) {
+          file = file.resolve(name);
+        }
+      } catch (InvalidPathException e) {
+        // Not a valid file name on this platform, so no such file exists.
+        continue;
+      }
+      if (Files.isRegularFile(file) && hasName(file, path)) {
+        count++;
+        if (found.size() < sampleSize) {
+          found.add(Joiner.on(File.separator).join(path));
+        }
+      }
+    }
+    String[] files = found.toArray(new String[found.size()]);
+    Arrays.sort(files);
+    return new FileSearch.Matches(count, files, exceeded);
+  }
+
+  /**
+   * Determine whether the names of the given file on disk are spelt exactly as
+   * in the given path. On a case-insensitive file system, a file may be found
+   * under a name that differs only in case, which a scan would not match.
+   */
+  private static boolean hasName(Path file, String[] path) {
+    Path real;
+    try {
+      real = file.toRealPath(LinkOption.NOFOLLOW_LINKS);
+    } catch (IOException e) {
+      // Deleted since it was found.
+      return false;
+    }
+    int offset = real.getNameCount() - path.length;
+    if (offset < 0) {
+      return false;
+    }
+    for (int i = 0; i < path.length; i++) {
+      if (!real.getName(offset + i).toString().equals(path[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static ForkJoinPool pool(int parallelism) {
+    Integer key = Integer.valueOf(parallelism);
+    ForkJoinPool pool = pools.get(key);
+    if (pool == null) {
+      ForkJoinPool newPool = new ForkJoinPool(parallelism);
+      pool = pools.putIfAbsent(key, newPool);
+      if (pool == null) {
+        pool = newPool;
+      } else {
+        newPool.shutdown();
+      }
+    }
+    return pool;
+  }
+
+  private final FilePatterns patterns;
+
+  private final int limit;
+
+  private final int sampleSize;
+
+  @CheckForNull
+  private final Snapshot snapshot;
+
+  private final SearchBudget.Meter meter;
+
+  private final List<String> found = Collections.synchronizedList(new ArrayList<String>());
+
+  private final AtomicInteger count = new AtomicInteger();
+
+  /**
+   * The listings of the directories scanned, keyed by their path prefix.
+   */
+  private final ConcurrentMap<String, Listing> visited = new ConcurrentHashMap<String, Listing>();
+
+  private volatile boolean stopped;
+
+  /**
+   * The limit that stopped this scan, or {@code null} if it is within its
+   * budget.
+   */
+  @CheckForNull
+  private volatile SearchBudget.Limit exceeded;
+
+  private FileScanner(FilePatterns patterns, int limit, int sampleSize,
+      @CheckForNull Snapshot snapshot, SearchBudget.Meter meter) {
+    this.patterns = patterns;
+    this.limit = limit;
+    this.sampleSize = sampleSize;
+    this.snapshot = snapshot;
+    this.meter = meter;
+  }
+
+  private void scanInParallel(Path base, @CheckForNull BasicFileAttributes attributes,
+      Ancestor root, int parallelism) throws InterruptedException {
+    ForkJoinTask<Void> task = pool(parallelism)
+        .submit(new DirectoryTask(base, attributes, new String[0], "", root));
+    try {
+      task.get();
+    } catch (InterruptedException e) {
+      stopped = true;
+      task.cancel(true);
+      throw e;
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause());
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * Scan a single directory. The subdirectories are scanned recursively, or
+   * added to the given list of tasks when scanning in parallel.
+   */
+  private void scanDirectory(Path directory, @CheckForNull BasicFileAttributes attributes,
+      String[] path, String prefix, Ancestor ancestors, List<DirectoryTask> subdirectories) {
+    if (snapshot != null && attributes != null) {
+      Listing listing = snapshot.listing(prefix, attributes);
+      if (listing != null) {
+        visited.put(prefix, listing);
+        rescan(directory, listing, path, prefix, ancestors, subdirectories);
+        return;
+      }
+    }
+    long listed = System.currentTimeMillis();
+    List<String> matchedNames = new ArrayList<String>();
+    List<String> directoryNames = new ArrayList<String>();
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+      for (Path entry : entries) {
+        if (stopped || overBudget()) {
+          return;
+        }
+        BasicFileAttributes entryAttributes;
+        try {
+          entryAttributes = Files.readAttributes(entry, BasicFileAttributes.class);
+        } catch (IOException e) {
+          // Broken symbolic link, or deleted since the directory was read.
+          continue;
+        }
+        String name = entry.getFileName().toString();
+        String[] entryPath = Arrays.copyOf(path, path.length + 1);
+        entryPath[path.length] = name;
+        if (entryAttributes.isDirectory()) {
+          if (patterns.couldMatchBelow(entryPath)) {
+            directoryNames.add(name);
+            descend(entry, entryAttributes, entryPath, prefix + name + File.separator, ancestors,
+                subdirectories);
+          }
+        } else if (entryAttributes.isRegularFile() && patterns.matches(entryPath)) {
+          matchedNames.add(name);
+          addMatch(prefix + name);
+        }
+      }
+    } catch (IOException | DirectoryIteratorException e) {
+      // Unreadable directory. Ignore it, as Ant does.
+      return;
+    }
+    if (snapshot != null && attributes != null) {
+      Listing listing = Listing.of(attributes, listed, matchedNames, directoryNames);
+      if (listing != null) {
+        visited.put(prefix, listing);
+      }
+    }
+  }
+
+  /**
+   * Scan a directory that has not been modified since the previous scan,
+   * using its listing from that scan. Only the subdirectories are read, to
+   * check whether they have been modified.
+   */
+  private void rescan(Path directory, Listing listing, String[] path, String prefix,
+      Ancestor ancestors, List<DirectoryTask> subdirectories) {
+    for (String name : listing.files) {
+      if (stopped) {
+        return;
+      }
+      addMatch(prefix + name);
+    }
+    for (String name : listing.directories) {
+      if (stopped || overBudget()) {
+        return;
+      }
+      Path entry = directory.resolve(name);
+      BasicFileAttributes entryAttributes;
+      try {
+        entryAttributes = Files.readAttributes(entry, BasicFileAttributes.class);
+      } catch (IOException e) {
+        continue;
+      }
+      if (entryAttributes.isDirectory()) {
+        String[] entryPath = Arrays.copyOf(path, path.length + 1);
+        entryPath[path.length] = name;
+        descend(entry, entryAttributes, entryPath, prefix + name + File.separator, ancestors,
+            subdirectories);
+      }
+    }
+  }
+
+  private void descend(Path directory, BasicFileAttributes attributes, String[] path,
+      String prefix, Ancestor ancestors, List<DirectoryTask> subdirectories) {
+    if (Ancestor.contains(ancestors, attributes)) {
+      return;
+    }
+    Ancestor directoryAncestors = Ancestor.of(attributes, ancestors);
+    if (subdirectories == null) {
+      scanDirectory(directory, attributes, path, prefix, directoryAncestors, null);
+    } else {
+      subdirectories.add(new DirectoryTask(directory, attributes, path, prefix,
+          directoryAncestors));
+    }
+  }
+
+  /**
+   * Record a visit of a directory entry, and stop the scan if it has exceeded
+   * its budget.
+   */
+  private boolean overBudget() {
+    SearchBudget.Limit limitExceeded = meter.visit();
+    if (limitExceeded != null) {
+      exceeded = limitExceeded;
+      stopped = true;
+      return true;
+    }
+    return false;
+  }
+
+  private void addMatch(String file) {
+    int n = count.incrementAndGet();
+    if (n <= sampleSize) {
+      found.add(file);
+    }
+    if (n >= limit) {
+      stopped = true;
+    }
+  }
+
+  /**
+   * Task which scans a single directory, then forks a task for each of its
+   * subdirectories.
+   */
+  @SuppressFBWarnings(value = { "SE_BAD_FIELD", "SE_BAD_FIELD_INNER_CLASS" })
+  private final class DirectoryTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Path directory;
+
+    @CheckForNull
+    private final BasicFileAttributes attributes;
+
+    private final String[] path;
+
+    private final String prefix;
+
+    private final Ancestor ancestors;
+
+    DirectoryTask(Path directory, @CheckForNull BasicFileAttributes attributes, String[] path,
+        String prefix, Ancestor ancestors) {
+      this.directory = directory;
+      this.attributes = attributes;
+      this.path = path;
+      this.prefix = prefix;
+      this.ancestors = ancestors;
+    }
+
+    @Override
+    protected void compute() {
+      if (stopped) {
+        return;
+      }
+      List<DirectoryTask> subdirectories = new ArrayList<DirectoryTask>();
+      scanDirectory(directory, attributes, path, prefix, ancestors, subdirectories);
+      invokeAll(subdirectories);
+    }
+  }
+
+  /**
+   * The listings of the directories found by the previous scans of a
+   * directory tree with the same patterns. A new snapshot is started
+   * periodically, so that every directory is listed again even if its
+   * modification time is unreliable.
+   */
+  static final class Snapshot {
+
+    /**
+     * The maximum number of snapshots to retain in this JVM.
+     */
+    private static final int CACHE_SIZE = Integer
+        .getInteger(FileScanner.class.getName() + ".snapshotCacheSize", 1000).intValue();
+
+    /**
+     * Recent snapshots, keyed by the base directory and the patterns. Entries
+     * are evicted in least recently used order.
+     */
+    private static final Map<List<String>, Snapshot> snapshots =
+        new LinkedHashMap<List<String>, Snapshot>(16, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<List<String>, Snapshot> eldest) {
+        return size() > CACHE_SIZE;
+      }
+    };
+
+    /**
+     * Get the snapshot for the given directory and patterns, starting a new
+     * one if it is older than the given age.
+     *
+     * @param directory
+     *          the base directory
+     * @param files
+     *          the files to find
+     * @param ignoredFiles
+     *          the files to ignore
+     * @param maxAgeMillis
+     *          the maximum age of the snapshot, in milliseconds
+     * @return the snapshot
+     */
+    static Snapshot of(File directory, String files, String ignoredFiles, long maxAgeMillis) {
+      List<String> key = Arrays.asList(directory.getAbsolutePath(), files, ignoredFiles);
+      long now = System.currentTimeMillis();
+      synchronized (snapshots) {
+        Snapshot snapshot = snapshots.get(key);
+        if (snapshot == null || now - snapshot.created > maxAgeMillis) {
+          snapshot = new Snapshot(now);
+          snapshots.put(key, snapshot);
+        }
+        return snapshot;
+      }
+    }
+
+    private final long created;
+
+    private volatile Map<String, Listing> listings = Collections.emptyMap();
+
+    private Snapshot(long created) {
+      this.created = created;
+    }
+
+    /**
+     * Get the listing of a directory, if it has not been modified since it was
+     * listed.
+     */
+    @CheckForNull
+    Listing listing(String prefix, BasicFileAttributes attributes) {
+      Listing listing = listings.get(prefix);
+      if (listing == null || listing.modified != attributes.lastModifiedTime().toMillis()) {
+        return null;
+      }
+      return listing;
+    }
+
+    /**
+     * Record the listings of a scan. If the scan stopped early, the listings
+     * of the directories that were not visited are retained.
+     */
+    void update(Map<String, Listing> visited, boolean complete) {
+      Map<String, Listing> updated = new HashMap<String, Listing>();
+      if (!complete) {
+        updated.putAll(listings);
+      }
+      updated.putAll(visited);
+      listings = updated;
+    }
+  }
+
+  /**
+   * The matching files and the subdirectories of a single directory.
+   */
+  private static final class Listing {
+
+    /**
+     * Modification times closer than this to the time that a directory was
+     * listed are not trusted, since file systems with a coarse resolution may
+     * record a later change with the same time.
+     */
+    private static final long MODIFICATION_TIME_RESOLUTION_MILLIS = 2000;
+
+    /**
+     * Create a listing, unless the modification time of the directory cannot
+     * be relied upon to detect later changes.
+     */
+    @CheckForNull
+    static Listing of(BasicFileAttributes attributes, long listed, List<String> files,
+        List<String> directories) {
+      long modified = attributes.lastModifiedTime().toMillis();
+      if (listed - modified < MODIFICATION_TIME_RESOLUTION_MILLIS) {
+        return null;
+      }
+      return new Listing(modified, files.toArray(new String[files.size()]),
+          directories.toArray(new String[directories.size()]));
+    }
+
+    private final long modified;
+
+    private final String[] files;
+
+    private final String[] directories;
+
+    private Listing(long modified, String[] files, String[] directories) {
+      this.modified = modified;
+      this.files = files;
+      this.directories = directories;
+    }
+  }
+
+  /**
+   * Chain of the directories above the one being scanned, used to avoid
+   * following symbolic links in a loop.
+   */
+  private static final class Ancestor {
+
+    @CheckForNull
+    static Ancestor of(BasicFileAttributes attributes, @CheckForNull Ancestor parent) {
+      Object key = attributes.fileKey();
+      return key == null ? parent : new Ancestor(key, parent);
+    }
+
+    static boolean contains(@CheckForNull Ancestor ancestor, BasicFileAttributes attributes) {
+      Object key = attributes.fileKey();
+      if (key != null) {
+        for (Ancestor a = ancestor; a != null; a = a.parent) {
+          if (key.equals(a.key)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    private final Object key;
+
+    @CheckForNull
+    private final Ancestor parent;
+
+    private Ancestor(Object key, @CheckForNull Ancestor parent) {
+      this.key = key;
+      this.parent = parent;
+    }
+  }
+}
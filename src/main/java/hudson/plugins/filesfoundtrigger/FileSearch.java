@@ -26,26 +26,34 @@ package hudson.plugins.filesfoundtrigger;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.annotation.CheckForNull;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 import org.apache.tools.ant.types.FileSet;
+import org.apache.tools.ant.types.selectors.FileSelector;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.FilePath;
 import hudson.FilePath.FileCallable;
 import hudson.Util;
-import hudson.model.Node;
 import hudson.remoting.VirtualChannel;
 import hudson.util.FormValidation;
 import jenkins.MasterToSlaveFileCallable;
-import jenkins.model.Jenkins;
 
 /**
  * Class that is responsible for performing the file search.
@@ -54,21 +62,127 @@ import jenkins.model.Jenkins;
  */
 class FileSearch {
 
+  /**
+   * Limit passed to {@link #perform(FilesFoundTriggerConfig, int)} to indicate
+   * that every matching file should be found.
+   */
+  static final int UNLIMITED = Integer.MAX_VALUE;
+
+  /**
+   * The number of file names that are retained when counting files.
+   */
+  static final int SAMPLE_SIZE = 10;
+
+  private static final Logger LOGGER = Logger.getLogger(FileSearch.class.getName());
+
+  /**
+   * The implementation used to walk the directory tree.
+   */
+  enum Engine {
+
+    /**
+     * Ant's {@code DirectoryScanner}, as used by versions prior to 1.6.
+     */
+    ANT,
+
+    /**
+     * The {@link FileScanner}, built on {@link java.nio.file}.
+     */
+    NIO;
+
+    /**
+     * Get the engine named by the given system property.
+     * 
+     * @param property
+     *          the system property
+     * @param defaultEngine
+     *          the engine to use if the property is not set or not recognised
+     * @return the engine
+     */
+    static Engine fromSystemProperty(String property, Engine defaultEngine) {
+      String value = System.getProperty(property);
+      if (value != null) {
+        try {
+          return valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+          LOGGER.log(Level.WARNING, "Unrecognised value for {0}: {1}",
+              new Object[] { property, value });
+        }
+      }
+      return defaultEngine;
+    }
+  }
+
+  /**
+   * The engine used for all file searches. Set the
+   * {@code hudson.plugins.filesfoundtrigger.FileSearch.engine} system property
+   * to {@code ant} to revert to Ant's directory scanner.
+   */
+  static Engine engine = Engine.fromSystemProperty(FileSearch.class.getName() + ".engine",
+      Engine.NIO);
+
+  /**
+   * The maximum number of directories that the {@link Engine#NIO} engine will
+   * list concurrently during a single search. Set the
+   * {@code hudson.plugins.filesfoundtrigger.FileSearch.parallelism} system
+   * property to enable parallel searches of large directory trees.
+   */
+  static int parallelism = Integer.getInteger(FileSearch.class.getName() + ".parallelism", 1)
+      .intValue();
+
+  /**
+   * Whether the {@link Engine#NIO} engine reuses the directory listings of the
+   * previous search of the same directory and patterns. Set the
+   * {@code hudson.plugins.filesfoundtrigger.FileSearch.incremental} system
+   * property to {@code true} to only list the directories whose modification
+   * time has changed.
+   */
+  static boolean incremental = Boolean.getBoolean(FileSearch.class.getName() + ".incremental");
+
+  /**
+   * How often an incremental search lists every directory again, in minutes.
+   * This guards against file systems that do not reliably update the
+   * modification time of a directory.
+   */
+  static int fullScanMinutes = Integer
+      .getInteger(FileSearch.class.getName() + ".fullScanMinutes", 60).intValue();
+
+  /**
+   * The maximum time that a single search may take, in seconds, or zero for no
+   * limit. Set the {@code hudson.plugins.filesfoundtrigger.FileSearch.maxSeconds}
+   * system property to stop searches that take too long.
+   */
+  static int maxSeconds = Integer.getInteger(FileSearch.class.getName() + ".maxSeconds", 0)
+      .intValue();
+
+  /**
+   * The maximum number of directory entries that a single search may visit, or
+   * zero for no limit. Set the
+   * {@code hudson.plugins.filesfoundtrigger.FileSearch.maxEntries} system
+   * property to stop searches of very large directory trees. The
+   * {@link Engine#ANT} engine only counts the entries that match the patterns.
+   */
+  static int maxEntries = Integer.getInteger(FileSearch.class.getName() + ".maxEntries", 0)
+      .intValue();
+
   /**
    * The search result.
    */
   static class Result {
     final FormValidation formValidation;
     final List<String> files;
+    final int count;
 
-    private Result(FormValidation formValidation) {
+    Result(FormValidation formValidation) {
       this.formValidation = formValidation;
       this.files = Collections.emptyList();
+      this.count = 0;
     }
 
-    private Result(FormValidation formValidation, String[] files) {
+    private Result(FormValidation formValidation, Matches matches) {
       this.formValidation = formValidation;
-      this.files = ImmutableList.copyOf(files);
+      this.files = ImmutableList.copyOf(matches.files);
+      this.count = matches.count;
     }
 
     /**
@@ -77,14 +191,52 @@ class FileSearch {
     @Override
     public String toString() {
       return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
-          .append("formValidation", formValidation).append("files", files).toString();
+          .append("formValidation", formValidation).append("files", files)
+          .append("count", count).toString();
     }
   }
 
   /**
-   * {@link FileCallable} which scans for matching files on a slave.
+   * The files found by a scan of a single directory.
    */
-  private static class FindFilesOnSlaveFileCallable extends MasterToSlaveFileCallable<String[]> {
+  static class Matches implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of matching files.
+     */
+    final int count;
+
+    /**
+     * The paths of the matching files relative to the base directory, in
+     * sorted order. When counting, this is only a sample of the files.
+     */
+    final String[] files;
+
+    /**
+     * The limit that stopped the scan before every matching file was found, or
+     * {@code null} if the scan was within its budget.
+     */
+    @CheckForNull
+    final SearchBudget.Limit exceeded;
+
+    Matches(int count, String[] files) {
+      this(count, files, null);
+    }
+
+    Matches(int count, String[] files, @CheckForNull SearchBudget.Limit exceeded) {
+      this.count = count;
+      this.files = files;
+      this.exceeded = exceeded;
+    }
+  }
+
+  /**
+   * A scan of a single directory. This is serializable so that it can be
+   * performed on a slave.
+   */
+  static class Scan implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
@@ -92,15 +244,154 @@ class FileSearch {
 
     private final String ignoredFiles;
 
-    FindFilesOnSlaveFileCallable(FilesFoundTriggerConfig config) {
+    private final Engine engine;
+
+    private final int parallelism;
+
+    private final boolean incremental;
+
+    private final int fullScanMinutes;
+
+    private final int limit;
+
+    private final int sampleSize;
+
+    private final SearchBudget budget;
+
+    Scan(FilesFoundTriggerConfig config, int limit, int sampleSize) {
       this.files = config.getFiles();
       this.ignoredFiles = config.getIgnoredFiles();
+      this.engine = FileSearch.engine;
+      this.parallelism = FileSearch.parallelism;
+      this.incremental = FileSearch.incremental;
+      this.fullScanMinutes = FileSearch.fullScanMinutes;
+      this.limit = limit;
+      this.sampleSize = sampleSize;
+      this.budget = new SearchBudget(TimeUnit.SECONDS.toMillis(maxSeconds), maxEntries);
+    }
+
+    /**
+     * Scan the given directory.
+     * 
+     * @param directory
+     *          the base directory
+     * @return the files found, or {@code null} if the directory does not exist
+     * @throws InterruptedException
+     */
+    @CheckForNull
+    Matches perform(File directory) throws InterruptedException {
+      if (!directory.isDirectory()) {
+        return null;
+      }
+      if (engine == Engine.NIO) {
+        FilePatterns patterns = FilePatterns.compile(files, ignoredFiles);
+        List<String[]> exactPaths = patterns.getExactPaths();
+        if (exactPaths != null) {
+          // No wildcards, such as a single marker file.
+          return FileScanner.find(directory, patterns, exactPaths, limit, sampleSize,
+              budget.start());
+        }
+        FileScanner.Snapshot snapshot = incremental ? FileScanner.Snapshot.of(directory, files,
+            ignoredFiles, TimeUnit.MINUTES.toMillis(fullScanMinutes)) : null;
+        return FileScanner.scan(directory, patterns, limit, sampleSize, parallelism, snapshot,
+            budget.start());
+      }
+      FileSet fileSet = Util.createFileSet(directory, files, ignoredFiles);
+      fileSet.setDefaultexcludes(false);
+      if (limit == UNLIMITED && sampleSize == UNLIMITED && budget.isUnlimited()) {
+        String[] found = fileSet.getDirectoryScanner().getIncludedFiles();
+        return new Matches(found.length, found);
+      }
+      LimitSelector selector = new LimitSelector(limit, sampleSize, budget.start());
+      fileSet.add(selector);
+      try {
+        fileSet.getDirectoryScanner();
+      } catch (LimitReachedException e) {
+        // Enough files have been found, or the budget has been exceeded.
+      }
+      String[] found = selector.sample.toArray(new String[selector.sample.size()]);
+      Arrays.sort(found);
+      return new Matches(selector.count, found, selector.exceeded);
+    }
+  }
+
+  /**
+   * {@link FileCallable} which scans for matching files on a slave. When
+   * counting, only a small sample of the file names is returned, which avoids
+   * sending every file name over the remoting channel when polling.
+   */
+  private static class FindFilesOnSlaveFileCallable extends MasterToSlaveFileCallable<Matches> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Scan scan;
+
+    FindFilesOnSlaveFileCallable(Scan scan) {
+      this.scan = scan;
     }
 
     @Override
-    public String[] invoke(File f, VirtualChannel channel)
-        throws IOException, InterruptedException {
-      return scan(f, files, ignoredFiles);
+    public Matches invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+      // Return null to indicate that the directory does not exist.
+      return scan.perform(f);
+    }
+  }
+
+  /**
+   * {@link FileSelector} which counts the files selected by the directory
+   * scanner, records a sample of their names, and aborts the scan once the
+   * limit has been reached or the budget has been exceeded.
+   */
+  private static class LimitSelector implements FileSelector {
+
+    private final int limit;
+
+    private final int sampleSize;
+
+    private final SearchBudget.Meter meter;
+
+    private final List<String> sample = new ArrayList<String>();
+
+    private int count;
+
+    @CheckForNull
+    private SearchBudget.Limit exceeded;
+
+    LimitSelector(int limit, int sampleSize, SearchBudget.Meter meter) {
+      this.limit = limit;
+      this.sampleSize = sampleSize;
+      this.meter = meter;
+    }
+
+    @Override
+    public boolean isSelected(File basedir, String filename, File file) {
+      exceeded = meter.visit();
+      if (exceeded != null) {
+        throw new LimitReachedException();
+      }
+      if (!file.isFile()) {
+        return false;
+      }
+      count++;
+      if (sample.size() < sampleSize) {
+        sample.add(filename);
+      }
+      if (count >= limit) {
+        throw new LimitReachedException();
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Thrown by {@link LimitSelector} to stop the directory scanner.
+   */
+  private static class LimitReachedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    LimitReachedException() {
+      super(null, null, false, false);
     }
   }
 
@@ -114,38 +405,139 @@ class FileSearch {
    * @throws InterruptedException
    */
   static Result perform(FilesFoundTriggerConfig config) throws IOException, InterruptedException {
+    return perform(config, new Scan(config, UNLIMITED, UNLIMITED));
+  }
 
-    // Check for an incomplete configuration.
-    if (config.getDirectory().isEmpty()) {
-      return new Result(FormValidation.error(Messages.DirectoryNotSpecified()));
+  /**
+   * Count the files that match the given configuration, stopping as soon as
+   * the given number of files has been found. This avoids walking the entire
+   * directory tree when polling. The files of the search result are limited
+   * to a small sample.
+   * 
+   * @param config
+   *          the configuration
+   * @param limit
+   *          the maximum number of files to count, which must be at least one,
+   *          or {@link #UNLIMITED}
+   * @return the search result
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  static Result perform(FilesFoundTriggerConfig config, int limit)
+      throws IOException, InterruptedException {
+    return perform(config, new Scan(config, checkLimit(limit), SAMPLE_SIZE));
+  }
+
+  /**
+   * Count the files that match the given configuration without waiting for
+   * the search to complete. Searches of a slave are passed to the
+   * {@link SearchBatcher}, so that they share a single call over the remoting
+   * channel with the other searches of that slave. Searches of the master are
+   * submitted to the {@link SearchExecutor} through the {@link SearchThrottle}.
+   * 
+   * @param config
+   *          the configuration
+   * @param limit
+   *          the maximum number of files to count, which must be at least one,
+   *          or {@link #UNLIMITED}
+   * @return the future search result
+   * @see #perform(FilesFoundTriggerConfig, int)
+   */
+  static ListenableFuture<Result> performAsync(final FilesFoundTriggerConfig config,
+      final int limit) {
+    Result invalid = validate(config);
+    if (invalid != null) {
+      return Futures.immediateFuture(invalid);
     }
-    if (config.getFiles().isEmpty()) {
-      return new Result(FormValidation.error(Messages.FilesNotSpecified()));
+    final Scan scan = new Scan(config, checkLimit(limit), SAMPLE_SIZE);
+    if (config.getNode() != null) {
+      return SearchBatcher.submit(config, scan);
+    }
+    return SearchThrottle.submit(null, new Callable<Result>() {
+      @Override
+      public Result call() throws IOException, InterruptedException {
+        return perform(config, scan);
+      }
+    });
+  }
+
+  /**
+   * A trigger number of zero or less is always reached, so the trigger does
+   * not search at all in that case.
+   */
+  private static int checkLimit(int limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("limit: " + limit);
+    }
+    return limit;
+  }
+
+  private static Result perform(FilesFoundTriggerConfig config, Scan scan)
+      throws IOException, InterruptedException {
+    Result invalid = validate(config);
+    if (invalid != null) {
+      return invalid;
     }
 
     // Search for the files on the master or on a slave.
     String nodeName = config.getNode();
-    String[] found;
+    Matches found;
     if (nodeName == null) {
       // master
-      found = scan(new File(config.getDirectory()), config.getFiles(), config.getIgnoredFiles());
+      found = scan.perform(new File(config.getDirectory()));
     } else {
       // slave
-      Node slaveNode = null;
-      Jenkins jenkins = Jenkins.getInstance();
-      if (jenkins != null) {
-        slaveNode = jenkins.getNode(nodeName);
+      VirtualChannel channel = NodeChannels.channel(nodeName);
+      if (channel == null) {
+        throw new IOException(Messages.NodeOffline(nodeName));
       }
-      if (slaveNode == null) {
+      FilePath filePath = new FilePath(channel, config.getDirectory());
+      found = SearchExecutor.get(filePath.actAsync(new FindFilesOnSlaveFileCallable(scan)),
+          nodeName);
+    }
+    return result(config, found);
+  }
+
+  /**
+   * Check that the configuration is complete and that its node is available.
+   * 
+   * @return the result to report, or {@code null} if the search can proceed
+   */
+  @CheckForNull
+  private static Result validate(FilesFoundTriggerConfig config) {
+
+    // Check for an incomplete configuration.
+    if (config.getDirectory().isEmpty()) {
+      return new Result(FormValidation.error(Messages.DirectoryNotSpecified()));
+    }
+    if (config.getFiles().isEmpty()) {
+      return new Result(FormValidation.error(Messages.FilesNotSpecified()));
+    }
+
+    // Check that the slave exists and is online.
+    String nodeName = config.getNode();
+    if (nodeName != null) {
+      NodeChannels.State state = NodeChannels.lookup(nodeName);
+      if (!state.exists) {
         return new Result(FormValidation.error(Messages.NodeNotFound(nodeName)));
       }
-      VirtualChannel channel = slaveNode.getChannel();
-      if (channel == null) {
+      if (state.channel == null) {
         return new Result(FormValidation.error(Messages.NodeOffline(nodeName)));
       }
-      FilePath filePath = new FilePath(channel, config.getDirectory());
-      found = filePath.act(new FindFilesOnSlaveFileCallable(config));
     }
+    return null;
+  }
+
+  /**
+   * Create the result of a search.
+   * 
+   * @param config
+   *          the configuration
+   * @param found
+   *          the files found, or {@code null} if the directory does not exist
+   * @return the search result
+   */
+  static Result result(FilesFoundTriggerConfig config, @CheckForNull Matches found) {
 
     // Check for missing directory.
     if (found == null) {
@@ -153,31 +545,29 @@ class FileSearch {
       return new Result(FormValidation.warning(Messages.DirectoryNotFound(userName)));
     }
 
+    // Check for a search that was stopped early.
+    if (found.exceeded != null) {
+      String message = found.exceeded == SearchBudget.Limit.TIME
+          ? Messages.TimeBudgetExceeded(Integer.valueOf(maxSeconds), Integer.valueOf(found.count))
+          : Messages.EntryBudgetExceeded(Integer.valueOf(maxEntries),
+              Integer.valueOf(found.count));
+      LOGGER.log(Level.WARNING, "Searching for {0}. Result: {1}",
+          new Object[] { config, message });
+      return new Result(FormValidation.warning(message), found);
+    }
+
     // Search was successful.
     FormValidation formValidation;
-    if (found.length == 0) {
+    if (found.count == 0) {
       formValidation = FormValidation.ok(Messages.NoFilesFound());
-    } else if (found.length == 1) {
-      formValidation = FormValidation.ok(Messages.SingleFileFound(found[0]));
+    } else if (found.count == 1) {
+      formValidation = FormValidation.ok(Messages.SingleFileFound(found.files[0]));
     } else {
-      formValidation = FormValidation
-          .ok(Messages.MultipleFilesFound(Integer.valueOf(found.length)));
+      formValidation = FormValidation.ok(Messages.MultipleFilesFound(Integer.valueOf(found.count)));
     }
     return new Result(formValidation, found);
   }
 
-  @CheckForNull
-  @SuppressFBWarnings(value = "PZLA_PREFER_ZERO_LENGTH_ARRAYS")
-  private static String[] scan(File f, String files, String ignoredFiles) {
-    if (!f.isDirectory()) {
-      // Return null to indicate that the directory does not exist.
-      return null;
-    }
-    FileSet fileSet = Util.createFileSet(f, files, ignoredFiles);
-    fileSet.setDefaultexcludes(false);
-    return fileSet.getDirectoryScanner().getIncludedFiles();
-  }
-
   private FileSearch() {
   }
 }
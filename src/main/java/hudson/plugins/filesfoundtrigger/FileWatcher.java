@@ -0,0 +1,735 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 Steven G. Brown
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.FilePath;
+import hudson.FilePath.FileCallable;
+import hudson.remoting.Channel;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.security.MasterToSlaveCallable;
+
+/**
+ * Watches a directory tree for new files with a {@link WatchService}, on the
+ * master or on a slave. The {@link Listener} is notified when a file that
+ * matches the patterns is created, or when some events may have been lost. It
+ * is then up to the listener to search for the files.
+ * <p>
+ * Watches are started and stopped by a thread of the {@link SearchExecutor},
+ * since this may require a call over the remoting channel, so a slow slave
+ * does not hold up the thread that starts or stops the watch. A watch on a
+ * slave is stopped when the channel to the master is closed.
+ * <p>
+ * Each JVM has a single {@link WatchService}, shared by all of its watches, and
+ * a single thread that passes the events of each directory to the watches that
+ * registered it. On Linux, every watch service is an inotify instance, and
+ * their number is limited per user.
+ *
+ * @author Steven G. Brown
+ */
+final class FileWatcher {
+
+  private static final Logger LOGGER = Logger.getLogger(FileWatcher.class.getName());
+
+  /**
+   * How often to try to register the base directory while it does not exist,
+   * in seconds.
+   */
+  static long retrySeconds = 10;
+
+  private static final AtomicLong watchCounter = new AtomicLong();
+
+  /**
+   * The watches running in this JVM, keyed by their ID.
+   */
+  private static final ConcurrentMap<Long, Watch> watches = new ConcurrentHashMap<Long, Watch>();
+
+  /**
+   * Guards {@link #service}, {@link #registrations} and the keys of each
+   * watch.
+   */
+  private static final Object lock = new Object();
+
+  /**
+   * The watch service of this JVM, or {@code null} if it has not been started.
+   */
+  @CheckForNull
+  private static WatchService service;
+
+  /**
+   * The watches that registered each directory. Watches of overlapping trees
+   * share the key of a directory that both have registered.
+   */
+  private static final Map<WatchKey, Set<Watch>> registrations =
+      new HashMap<WatchKey, Set<Watch>>();
+
+  /**
+   * Receives notifications from a watch.
+   */
+  public interface Listener {
+
+    /**
+     * Called when matching files may have been created.
+     */
+    void filesChanged();
+  }
+
+  /**
+   * Receives notifications from a running watch. When the watch is on a
+   * slave, this is exported over the remoting channel and called from the
+   * slave.
+   */
+  public interface Callback extends Listener {
+
+    /**
+     * Called when the watch has stopped, either because it was closed or
+     * because it failed.
+     */
+    void watchStopped();
+
+    /**
+     * Called when part of the directory tree could not be watched, so that
+     * some new files will only be found by the scheduled searches.
+     */
+    void watchDegraded();
+  }
+
+  /**
+   * Handle on a watch, which is used by the master to stop it.
+   */
+  static final class Handle implements Callback {
+
+    @CheckForNull
+    private final String nodeName;
+
+    @CheckForNull
+    private final VirtualChannel channel;
+
+    private final Listener listener;
+
+    /**
+     * The ID of the watch, once it has started.
+     */
+    private final SettableFuture<Long> started = SettableFuture.create();
+
+    private volatile boolean stopped;
+
+    private volatile boolean failed;
+
+    private volatile boolean degraded;
+
+    private Handle(@CheckForNull String nodeName, @CheckForNull VirtualChannel channel,
+        Listener listener) {
+      this.nodeName = nodeName;
+      this.channel = channel;
+      this.listener = listener;
+    }
+
+    /**
+     * Determine whether this watch is starting or running on the given node. A
+     * watch is lost when it fails, and a watch on a slave is lost when the
+     * slave reconnects.
+     *
+     * @param nodeName
+     *          the name of the node, or {@code null} for the master
+     * @return {@code true} if the watch is starting or running
+     */
+    boolean isAlive(@CheckForNull String nodeName) {
+      if (stopped || failed) {
+        return false;
+      }
+      return nodeName == null || channel != null && channel == NodeChannels.channel(nodeName);
+    }
+
+    /**
+     * Determine whether part of the directory tree could not be watched.
+     *
+     * @return {@code true} if some new files may only be found by the
+     *         scheduled searches
+     */
+    boolean isDegraded() {
+      return degraded;
+    }
+
+    /**
+     * Get the ID of the watch.
+     *
+     * @return future that returns the ID once the watch has started
+     */
+    ListenableFuture<Long> getStarted() {
+      return started;
+    }
+
+    /**
+     * Stop watching. A watch on a slave is stopped by a thread of the
+     * {@link SearchExecutor}.
+     */
+    void close() {
+      stopped = true;
+      Futures.addCallback(started, new FutureCallback<Long>() {
+        @Override
+        public void onSuccess(final Long id) {
+          if (channel == null) {
+            stop(id.longValue());
+            return;
+          }
+          SearchExecutor.submitRemote(new Callable<Void>() {
+            @Override
+            public Void call() {
+              try {
+                SearchExecutor.get(channel.callAsync(new StopWatchingCallable(id.longValue())),
+                    nodeName);
+              } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Unable to stop watch " + id, e);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              return null;
+            }
+          });
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+          // Never started.
+        }
+      });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void filesChanged() {
+      if (!stopped) {
+        listener.filesChanged();
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void watchStopped() {
+      stopped = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void watchDegraded() {
+      degraded = true;
+    }
+  }
+
+  /**
+   * Start watching the directory of the given configuration. The watch is
+   * started by a thread of the {@link SearchExecutor}.
+   *
+   * @param config
+   *          the expanded configuration
+   * @param listener
+   *          notified when matching files may have been created
+   * @return a handle on the new watch
+   * @throws IOException
+   *           if the slave is offline
+   */
+  static Handle watch(final FilesFoundTriggerConfig config, Listener listener)
+      throws IOException {
+    final String nodeName = config.getNode();
+    final VirtualChannel channel = nodeName == null ? null : NodeChannels.channel(nodeName);
+    if (nodeName != null && channel == null) {
+      throw new IOException(Messages.NodeOffline(nodeName));
+    }
+    final Handle handle = new Handle(nodeName, channel, listener);
+    ListenableFuture<Long> id;
+    if (channel == null) {
+      id = SearchExecutor.submit(new Callable<Long>() {
+        @Override
+        public Long call() throws IOException {
+          FilePatterns patterns = FilePatterns.compile(config.getFiles(),
+              config.getIgnoredFiles());
+          return Long.valueOf(start(new File(config.getDirectory()), patterns, handle, null));
+        }
+      });
+    } else {
+      id = SearchExecutor.submitRemote(new Callable<Long>() {
+        @Override
+        public Long call() throws IOException, InterruptedException {
+          Callback proxy = channel.export(Callback.class, handle);
+          FilePath filePath = new FilePath(channel, config.getDirectory());
+          return SearchExecutor.get(filePath.actAsync(new StartWatchingCallable(config, proxy)),
+              nodeName);
+        }
+      });
+    }
+    Futures.addCallback(id, new FutureCallback<Long>() {
+      @Override
+      public void onSuccess(Long result) {
+        handle.started.set(result);
+        if (handle.stopped) {
+          // Closed while starting.
+          handle.close();
+        }
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        LOGGER.log(Level.FINE, "Unable to watch " + config, t);
+        handle.failed = true;
+        handle.started.setException(t);
+      }
+    });
+    return handle;
+  }
+
+  private static long start(File directory, FilePatterns patterns, Callback callback,
+      @CheckForNull Channel channel) throws IOException {
+    long id = watchCounter.incrementAndGet();
+    Watch watch = new Watch(id, directory.toPath(), patterns, callback, channel, service());
+    watches.put(Long.valueOf(id), watch);
+    watch.registerAll(watch.base);
+    return id;
+  }
+
+  /**
+   * Get the watch service of this JVM, starting it and the thread that
+   * dispatches its events if necessary.
+   */
+  private static WatchService service() throws IOException {
+    synchronized (lock) {
+      if (service == null) {
+        service = FileSystems.getDefault().newWatchService();
+        Thread thread = new Thread(new Dispatcher(service), "FilesFoundTrigger watch dispatcher");
+        thread.setDaemon(true);
+        thread.start();
+      }
+      return service;
+    }
+  }
+
+  private static void stop(long id) {
+    Watch watch = watches.remove(Long.valueOf(id));
+    if (watch != null) {
+      watch.close();
+    }
+  }
+
+  /**
+   * {@link FileCallable} which starts a watch on a slave.
+   */
+  private static final class StartWatchingCallable extends MasterToSlaveFileCallable<Long> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String files;
+
+    private final String ignoredFiles;
+
+    @SuppressFBWarnings(value = "SE_BAD_FIELD")
+    private final Callback callback;
+
+    StartWatchingCallable(FilesFoundTriggerConfig config, Callback callback) {
+      this.files = config.getFiles();
+      this.ignoredFiles = config.getIgnoredFiles();
+      this.callback = callback;
+    }
+
+    @Override
+    public Long invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+      return Long.valueOf(start(f, FilePatterns.compile(files, ignoredFiles), callback,
+          channel instanceof Channel ? (Channel) channel : null));
+    }
+  }
+
+  /**
+   * {@link hudson.remoting.Callable} which stops a watch on a slave.
+   */
+  private static final class StopWatchingCallable extends MasterToSlaveCallable<Void, IOException> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long id;
+
+    StopWatchingCallable(long id) {
+      this.id = id;
+    }
+
+    @Override
+    public Void call() {
+      stop(id);
+      return null;
+    }
+  }
+
+  /**
+   * Passes the events of the watch service to the watches that registered
+   * each directory, and registers the base directories that have been
+   * created since their watches started.
+   */
+  private static final class Dispatcher implements Runnable {
+
+    private final WatchService watchService;
+
+    Dispatcher(WatchService watchService) {
+      this.watchService = watchService;
+    }
+
+    @Override
+    public void run() {
+      long lastRetry = System.nanoTime();
+      try {
+        while (true) {
+          WatchKey key = watchService.poll(retrySeconds, TimeUnit.SECONDS);
+          if (key != null) {
+            dispatch(key);
+          }
+          if (System.nanoTime() - lastRetry >= TimeUnit.SECONDS.toNanos(retrySeconds)) {
+            lastRetry = System.nanoTime();
+            retryBaseDirectories();
+          }
+        }
+      } catch (ClosedWatchServiceException e) {
+        // Stopped.
+      } catch (InterruptedException e) {
+        // Stopped.
+      } finally {
+        synchronized (lock) {
+          if (service == watchService) {
+            service = null;
+          }
+        }
+        for (Watch watch : watches.values()) {
+          if (watch.service == watchService) {
+            stop(watch.id);
+          }
+        }
+        try {
+          watchService.close();
+        } catch (IOException e) {
+          LOGGER.log(Level.FINE, "Unable to close the watch service", e);
+        }
+      }
+    }
+
+    private void dispatch(WatchKey key) {
+      Path directory = (Path) key.watchable();
+      List<WatchEvent<?>> events = key.pollEvents();
+      boolean valid = key.reset();
+      List<Watch> registered;
+      synchronized (lock) {
+        Set<Watch> watchSet = registrations.get(key);
+        registered = watchSet == null ? Collections.<Watch>emptyList()
+            : new ArrayList<Watch>(watchSet);
+        if (!valid) {
+          registrations.remove(key);
+          for (Watch watch : registered) {
+            watch.keys.remove(key);
+          }
+        }
+      }
+      for (Watch watch : registered) {
+        try {
+          if (watch.process(directory, events)) {
+            watch.notifyListener();
+          }
+        } catch (RuntimeException e) {
+          LOGGER.log(Level.WARNING, "Watch " + watch.id + " of " + watch.base + " has failed", e);
+          stop(watch.id);
+        }
+      }
+    }
+
+    private void retryBaseDirectories() {
+      for (Watch watch : watches.values()) {
+        if (watch.isWaitingForBase() && Files.isDirectory(watch.base)) {
+          // The base directory has been created.
+          watch.registerAll(watch.base);
+          watch.notifyListener();
+        }
+      }
+    }
+  }
+
+  /**
+   * A watch of a single directory tree.
+   */
+  private static final class Watch extends Channel.Listener {
+
+    final long id;
+
+    final Path base;
+
+    private final FilePatterns patterns;
+
+    private final Callback callback;
+
+    /**
+     * The channel to the master, or {@code null} if this watch is on the
+     * master.
+     */
+    @CheckForNull
+    private final Channel channel;
+
+    final WatchService service;
+
+    /**
+     * The keys of the directories registered by this watch. Guarded by
+     * {@link FileWatcher#lock}.
+     */
+    final Set<WatchKey> keys = new HashSet<WatchKey>();
+
+    /**
+     * Guarded by {@link FileWatcher#lock}.
+     */
+    private boolean closed;
+
+    private volatile boolean degraded;
+
+    Watch(long id, Path base, FilePatterns patterns, Callback callback,
+        @CheckForNull Channel channel, WatchService service) {
+      this.id = id;
+      this.base = base;
+      this.patterns = patterns;
+      this.callback = callback;
+      this.channel = channel;
+      this.service = service;
+      if (channel != null) {
+        channel.addListener(this);
+      }
+    }
+
+    /**
+     * Stop this watch when the channel to the master is closed, such as when
+     * the slave reconnects.
+     */
+    @Override
+    public void onClosed(Channel closed, IOException cause) {
+      stop(id);
+    }
+
+    /**
+     * Process the events of one of the directories registered by this watch.
+     *
+     * @return {@code true} if the listener should be notified
+     */
+    boolean process(Path directory, List<WatchEvent<?>> events) {
+      boolean changed = false;
+      boolean overflow = false;
+      for (WatchEvent<?> event : events) {
+        if (event.kind() == OVERFLOW) {
+          overflow = true;
+          continue;
+        }
+        Path entry = directory.resolve((Path) event.context());
+        if (Files.isDirectory(entry)) {
+          // Files may have been created before the directory was registered.
+          registerAll(entry);
+          changed = true;
+        } else if (patterns.matches(segments(base.relativize(entry)))) {
+          changed = true;
+        }
+      }
+      if (overflow) {
+        // Events have been lost, so register the whole tree again.
+        registerAll(base);
+        changed = true;
+      }
+      return changed;
+    }
+
+    boolean isWaitingForBase() {
+      synchronized (lock) {
+        return !closed && keys.isEmpty();
+      }
+    }
+
+    void notifyListener() {
+      LOGGER.log(Level.FINE, "Watch {0} of {1}: files changed",
+          new Object[] { Long.valueOf(id), base });
+      try {
+        callback.filesChanged();
+      } catch (RuntimeException e) {
+        // Most likely, the channel to the master has been closed.
+        LOGGER.log(Level.FINE, "Watch " + id + " of " + base + " has stopped", e);
+        stop(id);
+      }
+    }
+
+    void registerAll(Path directory) {
+      try {
+        Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+            new SimpleFileVisitor<Path>() {
+              @Override
+              public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(base)
+                    && !patterns.couldMatchBelow(segments(base.relativize(dir)))) {
+                  // No matching file can be created below this directory.
+                  return FileVisitResult.SKIP_SUBTREE;
+                }
+                try {
+                  if (!register(dir)) {
+                    return FileVisitResult.TERMINATE;
+                  }
+                } catch (NoSuchFileException e) {
+                  // Deleted since it was visited.
+                } catch (IOException e) {
+                  degraded(dir, e);
+                }
+                return FileVisitResult.CONTINUE;
+              }
+
+              @Override
+              public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+              }
+            });
+      } catch (NoSuchFileException e) {
+        // Not created yet, or deleted since the event.
+      } catch (IOException e) {
+        degraded(directory, e);
+      } catch (ClosedWatchServiceException e) {
+        // The dispatcher has stopped, and will stop this watch.
+      }
+    }
+
+    /**
+     * Register a directory with the watch service.
+     *
+     * @return {@code false} if this watch has been closed
+     */
+    private boolean register(Path dir) throws IOException {
+      synchronized (lock) {
+        if (closed) {
+          return false;
+        }
+        WatchKey key = dir.register(service, ENTRY_CREATE);
+        Set<Watch> watchSet = registrations.get(key);
+        if (watchSet == null) {
+          watchSet = new HashSet<Watch>();
+          registrations.put(key, watchSet);
+        }
+        watchSet.add(this);
+        keys.add(key);
+        return true;
+      }
+    }
+
+    /**
+     * Report that part of the tree could not be registered, such as when the
+     * limit on the number of inotify watches has been reached. Files created
+     * there are only found by the scheduled searches.
+     */
+    private void degraded(Path dir, IOException e) {
+      if (degraded) {
+        LOGGER.log(Level.FINE, "Unable to watch " + dir, e);
+        return;
+      }
+      degraded = true;
+      LOGGER.log(Level.WARNING, "Unable to watch " + dir
+          + ", so new files below it will only be found by the scheduled searches", e);
+      try {
+        callback.watchDegraded();
+      } catch (RuntimeException ex) {
+        // The channel to the master has been closed.
+      }
+    }
+
+    private static String[] segments(Path relative) {
+      String[] segments = new String[relative.getNameCount()];
+      for (int i = 0; i < segments.length; i++) {
+        segments[i] = relative.getName(i).toString();
+      }
+      return segments;
+    }
+
+    void close() {
+      if (channel != null) {
+        channel.removeListener(this);
+      }
+      synchronized (lock) {
+        closed = true;
+        for (WatchKey key : keys) {
+          Set<Watch> watchSet = registrations.get(key);
+          if (watchSet != null && watchSet.remove(this) && watchSet.isEmpty()) {
+            // No other watch is using this directory.
+            registrations.remove(key);
+            key.cancel();
+          }
+        }
+        keys.clear();
+      }
+      try {
+        callback.watchStopped();
+      } catch (RuntimeException e) {
+        // The channel to the master has been closed.
+      }
+    }
+  }
+
+  private FileWatcher() {
+  }
+}
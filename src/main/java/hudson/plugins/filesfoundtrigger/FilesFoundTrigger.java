@@ -26,29 +26,58 @@ package hudson.plugins.filesfoundtrigger;
 import static hudson.Util.fixNull;
 
 import java.io.IOException;
+import java.io.ObjectStreamException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.CheckForNull;
+
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.thoughtworks.xstream.converters.Converter;
 import com.thoughtworks.xstream.converters.reflection.PureJavaReflectionProvider;
 import com.thoughtworks.xstream.mapper.Mapper;
 
 import antlr.ANTLRException;
+import hudson.EnvVars;
 import hudson.Extension;
+import hudson.Util;
+import hudson.model.AbstractProject;
+import hudson.model.Action;
 import hudson.model.BuildableItem;
 import hudson.model.Item;
 import hudson.triggers.Trigger;
 import hudson.triggers.TriggerDescriptor;
+import hudson.util.FormValidation;
 import hudson.util.RobustReflectionConverter;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
 
 /**
  * Build trigger that schedules a build when certain files are found. These
@@ -64,6 +93,14 @@ public final class FilesFoundTrigger extends Trigger<BuildableItem> {
 
   private static final AtomicLong logCounter = new AtomicLong();
 
+  /**
+   * The maximum delay between a cron tick and the start of a poll, in seconds,
+   * or zero to poll on the tick. This is kept below a minute, the shortest
+   * cron period, so that a delayed poll always starts before the next tick.
+   */
+  static int spreadSeconds = Integer
+      .getInteger(FilesFoundTrigger.class.getName() + ".spreadSeconds", 30).intValue();
+
   /**
    * The slave node on which to look for files, or {@code null} if the master
    * will be used.
@@ -98,6 +135,53 @@ public final class FilesFoundTrigger extends Trigger<BuildableItem> {
    */
   private final ArrayList<FilesFoundTriggerConfig> additionalConfigs;
 
+  /**
+   * Whether to watch the directories for new files, or {@code null} if only the
+   * crontab specification is used.
+   */
+  private Boolean watch;
+
+  /**
+   * The configured file patterns, which are built from the fields above.
+   */
+  private transient List<FilesFoundTriggerConfig> configs;
+
+  /**
+   * The variables that the configurations were last expanded with.
+   */
+  private transient EnvVars expandedWith;
+
+  /**
+   * The expanded configurations, in the same order as {@link #configs}.
+   */
+  private transient List<FilesFoundTriggerConfig> expandedConfigs;
+
+  /**
+   * The maximum interval between searches that find no files, in minutes, or
+   * {@code null} if every search follows the crontab specification.
+   */
+  private String maxBackoffMinutes;
+
+  /**
+   * The adaptive polling state, keyed by the unexpanded configuration.
+   */
+  private transient Map<FilesFoundTriggerConfig, PollingBackoff> backoffs;
+
+  /**
+   * The running watches, keyed by the expanded configuration.
+   */
+  private transient Map<FilesFoundTriggerConfig, FileWatcher.Handle> watches;
+
+  /**
+   * The most recent poll, which may still be running.
+   */
+  private transient ListenableFuture<Boolean> lastPoll;
+
+  /**
+   * The poll that is waiting for its offset after a cron tick, if any.
+   */
+  private transient ScheduledFuture<?> delayedPoll;
+
   /**
    * Create a new {@link FilesFoundTrigger}.
    * 
@@ -130,6 +214,7 @@ public final class FilesFoundTrigger extends Trigger<BuildableItem> {
       configsCopy = null;
     }
     this.additionalConfigs = configsCopy;
+    this.configs = buildConfigs();
   }
 
   /**
@@ -148,12 +233,71 @@ public final class FilesFoundTrigger extends Trigger<BuildableItem> {
     this.additionalConfigs = null;
   }
 
+  /**
+   * Determine whether the directories are watched for new files. When they
+   * are, a build is scheduled as soon as files are found, and the crontab
+   * specification only defines how often to check that nothing was missed.
+   * 
+   * @return {@code true} if the directories are watched
+   * @since 1.6
+   */
+  public boolean isWatch() {
+    return watch != null && watch.booleanValue();
+  }
+
+  /**
+   * Set whether to watch the directories for new files.
+   * 
+   * @param watch
+   *          {@code true} to watch the directories
+   * @since 1.6
+   */
+  @DataBoundSetter
+  public void setWatch(boolean watch) {
+    this.watch = watch ? Boolean.TRUE : null;
+  }
+
+  /**
+   * Get the maximum interval between searches that find no files. While
+   * consecutive searches find nothing, the interval is doubled until it
+   * reaches this ceiling.
+   * 
+   * @return the interval in minutes, or an empty string if the crontab
+   *         specification is always followed
+   * @since 1.6
+   */
+  public String getMaxBackoffMinutes() {
+    return fixNull(maxBackoffMinutes);
+  }
+
+  /**
+   * Set the maximum interval between searches that find no files.
+   * 
+   * @param maxBackoffMinutes
+   *          the interval in minutes, or an empty string to always follow the
+   *          crontab specification
+   * @since 1.6
+   */
+  @DataBoundSetter
+  public void setMaxBackoffMinutes(String maxBackoffMinutes) {
+    this.maxBackoffMinutes = Util.fixEmptyAndTrim(maxBackoffMinutes);
+  }
+
   /**
    * Get the list of configured file patterns.
    * 
    * @return a list of {@link FilesFoundTriggerConfig}
    */
   public List<FilesFoundTriggerConfig> getConfigs() {
+    List<FilesFoundTriggerConfig> result = configs;
+    if (result == null) {
+      result = buildConfigs();
+      configs = result;
+    }
+    return result;
+  }
+
+  private List<FilesFoundTriggerConfig> buildConfigs() {
     ImmutableList.Builder<FilesFoundTriggerConfig> builder = ImmutableList.builder();
     builder.add(new FilesFoundTriggerConfig(node, directory, files, ignoredFiles, triggerNumber));
     if (additionalConfigs != null) {
@@ -162,35 +306,445 @@ public final class FilesFoundTrigger extends Trigger<BuildableItem> {
     return builder.build();
   }
 
+  /**
+   * Get the configurations with their variables expanded. The expanded
+   * configurations are reused until the variables change.
+   * 
+   * @return the expanded configurations, in the same order as
+   *         {@link #getConfigs()}
+   */
+  synchronized List<FilesFoundTriggerConfig> getExpandedConfigs() {
+    EnvVars vars = ExpansionEnvironment.get();
+    if (expandedConfigs == null || vars != expandedWith) {
+      ImmutableList.Builder<FilesFoundTriggerConfig> builder = ImmutableList.builder();
+      for (FilesFoundTriggerConfig config : getConfigs()) {
+        builder.add(config.expand(vars));
+      }
+      expandedConfigs = builder.build();
+      expandedWith = vars;
+    }
+    return expandedConfigs;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Object readResolve() throws ObjectStreamException {
+    configs = buildConfigs();
+    return super.readResolve();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void start(BuildableItem project, boolean newInstance) {
+    super.start(project, newInstance);
+    if (isWatch()) {
+      refreshWatches();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void stop() {
+    super.stop();
+    synchronized (this) {
+      if (delayedPoll != null) {
+        delayedPoll.cancel(false);
+        delayedPoll = null;
+      }
+      if (watches != null) {
+        for (FileWatcher.Handle handle : watches.values()) {
+          handle.close();
+        }
+        watches = null;
+      }
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public void run() {
+    if (isWatch()) {
+      refreshWatches();
+    }
+    long offset = pollOffsetMillis();
+    if (offset == 0) {
+      poll();
+      return;
+    }
+    synchronized (this) {
+      delayedPoll = Timer.get().schedule(new Runnable() {
+        @Override
+        public void run() {
+          poll();
+        }
+      }, offset, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Get the delay between a cron tick and the start of a poll. The delay is
+   * derived from the full name of the job, so it is the same on every tick, but
+   * differs between jobs so that their searches do not all start at once.
+   * 
+   * @return the delay in milliseconds
+   */
+  long pollOffsetMillis() {
+    long maxMillis = TimeUnit.SECONDS.toMillis(Math.min(spreadSeconds, 59));
+    if (maxMillis <= 0 || job == null) {
+      return 0;
+    }
+    int hash = Hashing.murmur3_32().hashString(job.getFullName(), Charsets.UTF_8).asInt();
+    return (hash & Integer.MAX_VALUE) % maxMillis;
+  }
+
+  /**
+   * Search for files with each configuration, and schedule a build if enough
+   * have been found. The searches are performed asynchronously by the
+   * {@link SearchExecutor}, so the build may be scheduled after this method
+   * returns. No search is performed if a build could not be scheduled anyway.
+   * The searches of different nodes run concurrently, and the build is
+   * scheduled as soon as one of them finds enough files, at which point the
+   * others are cancelled. If the previous poll is still running, it is not
+   * repeated. A search is shared with other triggers that have an identical
+   * configuration.
+   * 
+   * @return future that returns {@code true} if a build has been scheduled
+   */
+  synchronized ListenableFuture<Boolean> poll() {
+    if (lastPoll != null && !lastPoll.isDone()) {
+      LOGGER.log(Level.FINE, "{0} - Previous search still running (skipped)",
+          job == null ? null : job.getFullName());
+      return lastPoll;
+    }
+    lastPoll = startPoll();
+    return lastPoll;
+  }
+
+  private ListenableFuture<Boolean> startPoll() {
     long counter = logCounter.incrementAndGet();
-    for (FilesFoundTriggerConfig config : getConfigs()) {
-      FilesFoundTriggerConfig expandedConfig = config.expand();
-      LOGGER.log(Level.FINE, "{0} - Searching for {1}", new Object[] { counter, expandedConfig });
-      try {
-        FileSearch.Result result = FileSearch.perform(expandedConfig);
-        int triggerNumber = Integer.parseInt(expandedConfig.getTriggerNumber());
-        boolean triggerBuild = result.files.size() >= triggerNumber;
+    String skipped = skipReason();
+    if (skipped != null) {
+      LOGGER.log(Level.FINE, "{0} - {1} (search skipped)", new Object[] { counter, skipped });
+      return Futures.immediateFuture(Boolean.FALSE);
+    }
+    long now = System.currentTimeMillis();
+    long ceilingMillis = backoffCeilingMillis();
+    Map<FilesFoundTriggerConfig, PollingBackoff> currentBackoffs =
+        new HashMap<FilesFoundTriggerConfig, PollingBackoff>();
+    List<FilesFoundTriggerConfig> configList = getConfigs();
+    List<FilesFoundTriggerConfig> expandedConfigList = getExpandedConfigs();
+    List<FilesFoundTriggerConfig> searchedConfigs = new ArrayList<FilesFoundTriggerConfig>();
+    final List<ListenableFuture<Boolean>> searches = new ArrayList<ListenableFuture<Boolean>>();
+    for (int i = 0; i < configList.size(); i++) {
+      FilesFoundTriggerConfig config = configList.get(i);
+      FilesFoundTriggerConfig expandedConfig = expandedConfigList.get(i);
+      PollingBackoff backoff = null;
+      if (ceilingMillis > 0) {
+        backoff = backoffs == null ? null : backoffs.get(config);
+        if (backoff == null) {
+          backoff = new PollingBackoff();
+        }
+        currentBackoffs.put(config, backoff);
+        if (!backoff.isDue(now) && !isWatchDegraded(expandedConfig)) {
+          LOGGER.log(Level.FINE, "{0} - No files found recently; next search at {1,time}",
+              new Object[] { counter, new Date(backoff.getNextSearch()) });
+          continue;
+        }
+      }
+      ListenableFuture<Boolean> search = search(counter, expandedConfig, true, backoff);
+      searchedConfigs.add(expandedConfig);
+      searches.add(search);
+      if (search.isDone() && Futures.getUnchecked(search).booleanValue()) {
+        // No need to search with the remaining configurations.
+        break;
+      }
+    }
+    backoffs = currentBackoffs.isEmpty() ? null : currentBackoffs;
+    if (searches.isEmpty()) {
+      return Futures.immediateFuture(Boolean.FALSE);
+    }
+
+    // Schedule a build as soon as any search finds enough files.
+    final SettableFuture<Boolean> poll = SettableFuture.create();
+    final AtomicBoolean found = new AtomicBoolean();
+    final AtomicInteger remaining = new AtomicInteger(searches.size());
+    for (int i = 0; i < searches.size(); i++) {
+      final ListenableFuture<Boolean> search = searches.get(i);
+      final FilesFoundTriggerConfig expandedConfig = searchedConfigs.get(i);
+      search.addListener(new Runnable() {
+        @Override
+        public void run() {
+          if (!search.isCancelled() && Futures.getUnchecked(search).booleanValue()
+              && found.compareAndSet(false, true)) {
+            // The other searches are no longer needed. They are cancelled
+            // before the poll completes.
+            for (ListenableFuture<Boolean> other : searches) {
+              other.cancel(false);
+            }
+            scheduleBuild(expandedConfig);
+            poll.set(Boolean.TRUE);
+          } else if (remaining.decrementAndGet() == 0) {
+            poll.set(Boolean.FALSE);
+          }
+        }
+      }, MoreExecutors.sameThreadExecutor());
+    }
+    return poll;
+  }
+
+  /**
+   * Determine whether the watch of the given configuration could not register
+   * its whole directory tree. The scheduled searches are then the only way to
+   * find some of the new files, so they are not backed off.
+   * 
+   * @param expandedConfig
+   *          the expanded configuration
+   * @return {@code true} if the watch is degraded
+   */
+  private synchronized boolean isWatchDegraded(FilesFoundTriggerConfig expandedConfig) {
+    FileWatcher.Handle handle = watches == null ? null : watches.get(expandedConfig);
+    return handle != null && handle.isDegraded();
+  }
+
+  /**
+   * Get the maximum interval between searches that find no files.
+   * 
+   * @return the interval in milliseconds, or zero if adaptive polling is
+   *         disabled
+   */
+  private long backoffCeilingMillis() {
+    if (maxBackoffMinutes == null) {
+      return 0;
+    }
+    try {
+      return TimeUnit.MINUTES.toMillis(Math.max(0, Long.parseLong(maxBackoffMinutes)));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Get the adaptive polling state of each configuration.
+   * 
+   * @return the state, keyed by the unexpanded configuration
+   */
+  synchronized Map<FilesFoundTriggerConfig, PollingBackoff> getBackoffs() {
+    return backoffs == null ? Collections.<FilesFoundTriggerConfig, PollingBackoff>emptyMap()
+        : new HashMap<FilesFoundTriggerConfig, PollingBackoff>(backoffs);
+  }
+
+  /**
+   * Resume polling at the rate of the crontab specification.
+   */
+  private synchronized void resetBackoffs() {
+    if (backoffs != null) {
+      for (PollingBackoff backoff : backoffs.values()) {
+        backoff.reset();
+      }
+    }
+  }
+
+  /**
+   * Search for files.
+   * 
+   * @param counter
+   *          identifies this search in the log
+   * @param expandedConfig
+   *          the expanded configuration
+   * @param shared
+   *          whether the search may be shared with other triggers, in which
+   *          case the result may be a few seconds old
+   * @param backoff
+   *          the adaptive polling state to update with the result, or
+   *          {@code null}
+   * @return future that returns {@code true} if enough files have been found
+   *         to trigger a build
+   */
+  private ListenableFuture<Boolean> search(final long counter,
+      final FilesFoundTriggerConfig expandedConfig, final boolean shared,
+      @CheckForNull final PollingBackoff backoff) {
+    LOGGER.log(Level.FINE, "{0} - Searching for {1}", new Object[] { counter, expandedConfig });
+    final int triggerNumber;
+    try {
+      triggerNumber = Integer.parseInt(expandedConfig.getTriggerNumber());
+    } catch (NumberFormatException e) {
+      LOGGER.log(Level.FINE, "{0} - Result: Invalid trigger number (build not triggered)",
+          counter);
+      return Futures.immediateFuture(Boolean.FALSE);
+    }
+    if (triggerNumber <= 0) {
+      // Any number of files reaches the trigger number, so there is no need
+      // to search.
+      LOGGER.log(Level.FINE, "{0} - Result: {1} (build triggered)", new Object[] { counter,
+          Messages.TriggerNumberAlwaysReached(Integer.valueOf(triggerNumber)) });
+      return Futures.immediateFuture(Boolean.TRUE);
+    }
+    final ListenableFuture<FileSearch.Result> result = shared
+        ? SearchCoalescer.search(expandedConfig, triggerNumber)
+        : FileSearch.performAsync(expandedConfig, triggerNumber);
+    final SettableFuture<Boolean> triggered = SettableFuture.create();
+    Futures.addCallback(result, new FutureCallback<FileSearch.Result>() {
+      @Override
+      public void onSuccess(FileSearch.Result result) {
+        boolean triggerBuild = result.count >= triggerNumber;
+        if (backoff != null) {
+          backoff.searched(System.currentTimeMillis(), result.count > 0, backoffCeilingMillis());
+        }
         LOGGER.log(Level.FINE, "{0} - Result: {1} ({2})", new Object[] { counter,
             result.formValidation, triggerBuild ? "build triggered" : "build not triggered" });
-        if (triggerBuild) {
-          job.scheduleBuild(0, new FilesFoundTriggerCause(expandedConfig));
+        triggered.set(Boolean.valueOf(triggerBuild));
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        if (t instanceof InterruptedException) {
+          LOGGER.log(Level.FINE, "{0} - Result: Thread interrupted (build not triggered)",
+              counter);
+        } else if (t instanceof CancellationException) {
+          LOGGER.log(Level.FINE, "{0} - Result: Search cancelled (build not triggered)",
+              counter);
+        } else {
+          LOGGER.log(Level.WARNING, MessageFormat.format("{0} - Searching for {1}. Result: {2}",
+              new Object[] { counter, expandedConfig, t.getMessage() }), t);
+        }
+        triggered.set(Boolean.FALSE);
+      }
+    });
+    triggered.addListener(new Runnable() {
+      @Override
+      public void run() {
+        if (!triggered.isCancelled()) {
           return;
         }
-      } catch (NumberFormatException e) {
-        LOGGER.log(Level.FINE, "{0} - Result: Invalid trigger number (build not triggered)",
-            counter);
-      } catch (InterruptedException e) {
-        LOGGER.log(Level.FINE, "{0} - Result: Thread interrupted (build not triggered)", counter);
-        Thread.currentThread().interrupt();
-      } catch (IOException e) {
-        LOGGER.log(Level.WARNING, MessageFormat.format("{0} - Searching for {1}. Result: {2}",
-            new Object[] { counter, expandedConfig, e.getMessage() }), e);
+        if (shared) {
+          SearchCoalescer.cancel(expandedConfig, triggerNumber, result);
+        } else {
+          result.cancel(false);
+        }
       }
+    }, MoreExecutors.sameThreadExecutor());
+    return triggered;
+  }
+
+  /**
+   * Determine whether a build could be scheduled. There is no need to search
+   * for files when the job is disabled, when a build is already waiting in the
+   * queue, or when a build is running and the job cannot build concurrently.
+   * 
+   * @return the reason that a build could not be scheduled, or {@code null} if
+   *         the search should be performed
+   */
+  @CheckForNull
+  private String skipReason() {
+    if (job == null) {
+      return null;
+    }
+    if (job instanceof AbstractProject) {
+      AbstractProject<?, ?> project = (AbstractProject<?, ?>) job;
+      if (project.isDisabled()) {
+        return "Job disabled";
+      }
+      if (project.isBuilding() && !project.isConcurrentBuild()) {
+        return "Build in progress";
+      }
+    }
+    Jenkins jenkins = Jenkins.getInstance();
+    if (jenkins != null && jenkins.getQueue().contains(job)) {
+      return "Build already queued";
+    }
+    return null;
+  }
+
+  private void scheduleBuild(FilesFoundTriggerConfig expandedConfig) {
+    resetBackoffs();
+    if (job != null) {
+      job.scheduleBuild(0, new FilesFoundTriggerCause(expandedConfig));
+    }
+  }
+
+  /**
+   * Start watching each directory that is not already being watched, and stop
+   * the watches that are no longer needed.
+   */
+  private synchronized void refreshWatches() {
+    Map<FilesFoundTriggerConfig, FileWatcher.Handle> previous = watches == null
+        ? Collections.<FilesFoundTriggerConfig, FileWatcher.Handle>emptyMap() : watches;
+    Map<FilesFoundTriggerConfig, FileWatcher.Handle> current =
+        new HashMap<FilesFoundTriggerConfig, FileWatcher.Handle>();
+    for (FilesFoundTriggerConfig expandedConfig : getExpandedConfigs()) {
+      if (expandedConfig.getDirectory().isEmpty() || current.containsKey(expandedConfig)) {
+        continue;
+      }
+      FileWatcher.Handle handle = previous.get(expandedConfig);
+      if (handle == null || !handle.isAlive(expandedConfig.getNode())) {
+        try {
+          handle = FileWatcher.watch(expandedConfig, new WatchListener(expandedConfig));
+        } catch (IOException e) {
+          LOGGER.log(Level.FINE, "Unable to watch " + expandedConfig, e);
+          continue;
+        }
+      }
+      current.put(expandedConfig, handle);
+    }
+    for (Map.Entry<FilesFoundTriggerConfig, FileWatcher.Handle> entry : previous.entrySet()) {
+      if (current.get(entry.getKey()) != entry.getValue()) {
+        entry.getValue().close();
+      }
+    }
+    watches = current;
+  }
+
+  /**
+   * Searches for files when notified by a {@link FileWatcher}. The search is
+   * performed by a timer thread, so that the notification returns promptly.
+   */
+  private final class WatchListener implements FileWatcher.Listener {
+
+    private final FilesFoundTriggerConfig expandedConfig;
+
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    WatchListener(FilesFoundTriggerConfig expandedConfig) {
+      this.expandedConfig = expandedConfig;
+    }
+
+    @Override
+    public void filesChanged() {
+      if (!pending.compareAndSet(false, true)) {
+        // A search has already been requested.
+        return;
+      }
+      Timer.get().submit(new Runnable() {
+        @Override
+        public void run() {
+          pending.set(false);
+          long counter = logCounter.incrementAndGet();
+          String skipped = skipReason();
+          if (skipped != null) {
+            LOGGER.log(Level.FINE, "{0} - {1} (search skipped)",
+                new Object[] { counter, skipped });
+            return;
+          }
+          // Files have just been created, so do not use a shared result.
+          final ListenableFuture<Boolean> search = search(counter, expandedConfig, false, null);
+          search.addListener(new Runnable() {
+            @Override
+            public void run() {
+              if (Futures.getUnchecked(search).booleanValue()) {
+                scheduleBuild(expandedConfig);
+              }
+            }
+          }, MoreExecutors.sameThreadExecutor());
+        }
+      });
     }
   }
 
@@ -200,7 +754,19 @@ public final class FilesFoundTrigger extends Trigger<BuildableItem> {
   @Override
   public String toString() {
     return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("spec", spec)
-        .append("configs", getConfigs()).toString();
+        .append("configs", getConfigs()).append("watch", isWatch())
+        .append("maxBackoffMinutes", getMaxBackoffMinutes()).toString();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Collection<? extends Action> getProjectActions() {
+    if (maxBackoffMinutes == null) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList(new PollingBackoffAction(this));
   }
 
   /**
@@ -242,5 +808,19 @@ public final class FilesFoundTrigger extends Trigger<BuildableItem> {
     public String getDisplayName() {
       return Messages.DisplayName();
     }
+
+    /**
+     * Form validation for the {@code maxBackoffMinutes} field.
+     * 
+     * @param value
+     *          the value of the field
+     * @return the result of the validation
+     */
+    public FormValidation doCheckMaxBackoffMinutes(@QueryParameter String value) {
+      if (Util.fixEmptyAndTrim(value) == null) {
+        return FormValidation.ok();
+      }
+      return FormValidation.validatePositiveInteger(value);
+    }
   }
 }
@@ -27,13 +27,22 @@ import static hudson.Util.fixNull;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.thoughtworks.xstream.converters.Converter;
 import com.thoughtworks.xstream.converters.reflection.PureJavaReflectionProvider;
 import com.thoughtworks.xstream.mapper.Mapper;
@@ -41,14 +50,13 @@ import com.thoughtworks.xstream.mapper.Mapper;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.model.AbstractDescribableImpl;
+import hudson.model.AutoCompletionCandidates;
 import hudson.model.Descriptor;
-import hudson.model.Node;
-import hudson.slaves.EnvironmentVariablesNodeProperty;
-import hudson.slaves.NodeProperty;
 import hudson.util.ComboBoxModel;
 import hudson.util.FormValidation;
 import hudson.util.RobustReflectionConverter;
 import jenkins.model.Jenkins;
+import jenkins.util.Timer;
 
 /**
  * Pattern of files to locate within a single directory.
@@ -231,19 +239,19 @@ public final class FilesFoundTriggerConfig
    * @return the expanded configuration
    */
   FilesFoundTriggerConfig expand() {
-    EnvVars vars = new EnvVars();
-
-    // Environment variables
-    vars.overrideAll(System.getenv());
+    return hasVariables() ? expand(ExpansionEnvironment.get()) : this;
+  }
 
-    // Global properties
-    Jenkins jenkins = Jenkins.getInstance();
-    if (jenkins != null) {
-      for (NodeProperty<?> property : jenkins.getGlobalNodeProperties()) {
-        if (property instanceof EnvironmentVariablesNodeProperty) {
-          vars.overrideAll(((EnvironmentVariablesNodeProperty) property).getEnvVars());
-        }
-      }
+  /**
+   * Expand the given variables in each field.
+   * 
+   * @param vars
+   *          the variables
+   * @return the expanded configuration
+   */
+  FilesFoundTriggerConfig expand(EnvVars vars) {
+    if (!hasVariables()) {
+      return this;
     }
 
     // Expand each field
@@ -257,6 +265,17 @@ public final class FilesFoundTriggerConfig
         expTriggerNumber);
   }
 
+  /**
+   * Determine whether any field refers to a variable.
+   * 
+   * @return {@code true} if expanding this configuration could change it
+   */
+  private boolean hasVariables() {
+    return (node != null && node.indexOf('$') != -1) || directory.indexOf('$') != -1
+        || files.indexOf('$') != -1 || ignoredFiles.indexOf('$') != -1
+        || triggerNumber.indexOf('$') != -1;
+  }
+
   /**
    * Search for the files.
    * 
@@ -292,6 +311,41 @@ public final class FilesFoundTriggerConfig
   @Extension
   public static final class DescriptorImpl extends Descriptor<FilesFoundTriggerConfig> {
 
+    /**
+     * How long a test of the configuration may hold the request thread, in
+     * seconds.
+     */
+    static int testTimeoutSeconds = Integer
+        .getInteger(FilesFoundTriggerConfig.class.getName() + ".testTimeoutSeconds", 10)
+        .intValue();
+
+    /**
+     * How long the result of a test that outlived its request is kept for the
+     * next test of the same configuration, in minutes.
+     */
+    static int testResultMinutes = Integer
+        .getInteger(FilesFoundTriggerConfig.class.getName() + ".testResultMinutes", 60)
+        .intValue();
+
+    /**
+     * The tests that outlived their request, keyed by the expanded
+     * configuration. Each is removed when the next test of the same
+     * configuration picks it up, or after {@link #testResultMinutes}.
+     */
+    private static final ConcurrentMap<FilesFoundTriggerConfig,
+        ListenableFuture<FileSearch.Result>> unfinishedTests = Maps.newConcurrentMap();
+
+    /**
+     * The largest number of nodes to list in a combo box.
+     */
+    static int comboBoxLimit = Integer
+        .getInteger(FilesFoundTriggerConfig.class.getName() + ".comboBoxLimit", 200).intValue();
+
+    /**
+     * The largest number of nodes to suggest while the user types.
+     */
+    static final int AUTO_COMPLETE_LIMIT = 50;
+
     /**
      * {@inheritDoc}
      */
@@ -302,7 +356,13 @@ public final class FilesFoundTriggerConfig
     }
 
     /**
-     * Test the entered trigger configuration.
+     * Test the entered trigger configuration. The search is performed by the
+     * {@link SearchExecutor}, and is shared with any running or recently
+     * completed test of the same configuration. If the search has not
+     * completed within {@link #testTimeoutSeconds}, it continues in the
+     * background and a warning is returned. The search is then kept until the
+     * next test of the same configuration, so that testing again shows its
+     * result without starting another search.
      * 
      * @param node
      *          the node on which to locate files (the master or a slave node)
@@ -327,8 +387,43 @@ public final class FilesFoundTriggerConfig
         throws IOException, InterruptedException {
 
       FilesFoundTriggerConfig config = new FilesFoundTriggerConfig(node, directory, files,
-          ignoredFiles, triggerNumber);
-      return FileSearch.perform(config.expand()).formValidation;
+          ignoredFiles, triggerNumber).expand();
+      ListenableFuture<FileSearch.Result> search = unfinishedTests.remove(config);
+      boolean unfinished = search != null;
+      if (!unfinished) {
+        search = SearchCoalescer.search(config, FileSearch.UNLIMITED);
+      }
+      try {
+        return search.get(testTimeoutSeconds, TimeUnit.SECONDS).formValidation;
+      } catch (TimeoutException e) {
+        // The search continues, so that testing again shows its result.
+        keepUnfinishedTest(config, search);
+        return FormValidation.warning(Messages.TestStillRunning());
+      } catch (InterruptedException e) {
+        if (unfinished) {
+          keepUnfinishedTest(config, search);
+        } else {
+          SearchCoalescer.cancel(config, FileSearch.UNLIMITED, search);
+        }
+        throw e;
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RejectedExecutionException) {
+          return FormValidation.warning(Messages.TestRejected());
+        }
+        Throwables.propagateIfPossible(e.getCause(), IOException.class);
+        throw new IOException(e.getCause());
+      }
+    }
+
+    private static void keepUnfinishedTest(final FilesFoundTriggerConfig config,
+        final ListenableFuture<FileSearch.Result> search) {
+      unfinishedTests.put(config, search);
+      Timer.get().schedule(new Runnable() {
+        @Override
+        public void run() {
+          unfinishedTests.remove(config, search);
+        }
+      }, testResultMinutes, TimeUnit.MINUTES);
     }
 
     /**
@@ -337,17 +432,40 @@ public final class FilesFoundTriggerConfig
      * @return the available nodes
      */
     public ComboBoxModel doFillNodeItems() {
-      ComboBoxModel model = new ComboBoxModel();
-      model.add("master");
+      return NodeNames.getModel();
+    }
 
-      Jenkins jenkins = Jenkins.getInstance();
-      if (jenkins != null) {
-        for (Node node : jenkins.getNodes()) {
-          model.add(node.getNodeName());
+    /**
+     * Determine whether there are too many nodes to list in a combo box. If so,
+     * config.jelly displays a text box that suggests matching nodes as the user
+     * types.
+     * 
+     * @return {@code true} if the node names should be auto-completed
+     */
+    public boolean isAutoCompleteNode() {
+      return NodeNames.get().size() > comboBoxLimit;
+    }
+
+    /**
+     * Get the nodes whose names start with the entered text.
+     * 
+     * @param value
+     *          the entered text
+     * @return at most {@link #AUTO_COMPLETE_LIMIT} matching nodes
+     */
+    public AutoCompletionCandidates doAutoCompleteNode(@QueryParameter String value) {
+      AutoCompletionCandidates candidates = new AutoCompletionCandidates();
+      String prefix = fixNull(value).trim().toLowerCase(Locale.ENGLISH);
+      int count = 0;
+      for (String name : NodeNames.get()) {
+        if (name.toLowerCase(Locale.ENGLISH).startsWith(prefix)) {
+          candidates.add(name);
+          if (++count == AUTO_COMPLETE_LIMIT) {
+            break;
+          }
         }
       }
-
-      return model;
+      return candidates;
     }
   }
 }
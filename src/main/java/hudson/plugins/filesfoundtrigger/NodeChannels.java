@@ -0,0 +1,187 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 Steven G. Brown
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.CheckForNull;
+
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.slaves.ComputerListener;
+import jenkins.model.Jenkins;
+
+/**
+ * Caches the remoting channel of each slave, so that searches do not look up
+ * the node every time. The cache is kept up to date by a
+ * {@link ComputerListener}: an entry is discarded when its slave goes online
+ * or offline, and the whole cache is discarded when nodes are added, removed
+ * or reconfigured.
+ *
+ * @author Steven G. Brown
+ */
+final class NodeChannels {
+
+  /**
+   * The state of each slave that has been looked up, keyed by the name of the
+   * slave.
+   */
+  private static final ConcurrentMap<String, State> states =
+      new ConcurrentHashMap<String, State>();
+
+  /**
+   * The Jenkins instance that {@link #states} was looked up from.
+   */
+  private static volatile Jenkins cachedFor;
+
+  /**
+   * Incremented by the {@link Listener} before it discards any entries, so
+   * that the result of a lookup which overlaps a change is not cached.
+   */
+  private static final AtomicLong generation = new AtomicLong();
+
+  /**
+   * The state of a slave.
+   */
+  static final class State {
+
+    /**
+     * The slave has not been added to Jenkins.
+     */
+    static final State NOT_FOUND = new State(false, null);
+
+    /**
+     * The slave exists, but is offline.
+     */
+    static final State OFFLINE = new State(true, null);
+
+    /**
+     * Whether the slave has been added to Jenkins.
+     */
+    final boolean exists;
+
+    /**
+     * The channel of the slave, or {@code null} if it is not online.
+     */
+    @CheckForNull
+    final VirtualChannel channel;
+
+    private State(boolean exists, @CheckForNull VirtualChannel channel) {
+      this.exists = exists;
+      this.channel = channel;
+    }
+  }
+
+  /**
+   * Get the state of the given slave. Slaves that do not exist are not
+   * cached, so that names which are only ever looked up once, such as those
+   * entered when testing a configuration, do not accumulate.
+   *
+   * @param nodeName
+   *          the name of the slave
+   * @return the state of the slave
+   */
+  static State lookup(String nodeName) {
+    Jenkins jenkins = Jenkins.getInstance();
+    if (jenkins != cachedFor) {
+      states.clear();
+      cachedFor = jenkins;
+    }
+    State state = states.get(nodeName);
+    if (state != null) {
+      return state;
+    }
+    long lookedUpAt = generation.get();
+    Node node = jenkins == null ? null : jenkins.getNode(nodeName);
+    if (node == null) {
+      return State.NOT_FOUND;
+    }
+    VirtualChannel channel = node.getChannel();
+    state = channel == null ? State.OFFLINE : new State(true, channel);
+    State cached = states.putIfAbsent(nodeName, state);
+    if (cached != null) {
+      return cached;
+    }
+    if (generation.get() != lookedUpAt) {
+      // The slave may have gone online or offline since it was looked up.
+      states.remove(nodeName, state);
+    }
+    return state;
+  }
+
+  /**
+   * Get the remoting channel of the given slave.
+   *
+   * @param nodeName
+   *          the name of the slave
+   * @return the channel, or {@code null} if the slave does not exist or is
+   *         offline
+   */
+  @CheckForNull
+  static VirtualChannel channel(String nodeName) {
+    return lookup(nodeName).channel;
+  }
+
+  /**
+   * Keeps the cache up to date.
+   */
+  @Extension
+  public static final class Listener extends ComputerListener {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onOnline(Computer c, TaskListener listener) {
+      generation.incrementAndGet();
+      states.remove(c.getName());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onOffline(Computer c) {
+      generation.incrementAndGet();
+      states.remove(c.getName());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onConfigurationChange() {
+      generation.incrementAndGet();
+      states.clear();
+    }
+  }
+
+  private NodeChannels() {
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 Steven G. Brown
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import hudson.Extension;
+import hudson.model.Node;
+import hudson.slaves.ComputerListener;
+import hudson.util.ComboBoxModel;
+import jenkins.model.Jenkins;
+
+/**
+ * Caches the names of the nodes that can be selected in a
+ * {@link FilesFoundTriggerConfig}, so that rendering the configuration page
+ * does not iterate over every node. The cache is discarded by a
+ * {@link ComputerListener} when nodes are added, removed or reconfigured.
+ *
+ * @author Steven G. Brown
+ */
+final class NodeNames {
+
+  /**
+   * The cached names, or {@code null} if they must be read again.
+   */
+  private static volatile Cache cache;
+
+  /**
+   * Held while the names are read and while they are discarded, so that names
+   * read before a change cannot replace the cache after it has been
+   * discarded.
+   */
+  private static final Object lock = new Object();
+
+  /**
+   * Get the names of the nodes.
+   *
+   * @return the names, starting with {@code "master"}
+   */
+  static List<String> get() {
+    return cache().names;
+  }
+
+  /**
+   * Get the names of the nodes as a combo box model. The model is shared, and
+   * must not be modified.
+   *
+   * @return the model
+   */
+  static ComboBoxModel getModel() {
+    return cache().model;
+  }
+
+  private static Cache cache() {
+    Jenkins jenkins = Jenkins.getInstance();
+    Cache result = cache;
+    if (result != null && result.jenkins == jenkins) {
+      return result;
+    }
+    synchronized (lock) {
+      result = cache;
+      if (result == null || result.jenkins != jenkins) {
+        List<String> list = new ArrayList<String>();
+        list.add("master");
+        if (jenkins != null) {
+          for (Node node : jenkins.getNodes()) {
+            list.add(node.getNodeName());
+          }
+        }
+        result = new Cache(jenkins, Collections.unmodifiableList(list));
+        cache = result;
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Discard the cached names.
+   */
+  static void invalidate() {
+    synchronized (lock) {
+      cache = null;
+    }
+  }
+
+  /**
+   * The names of the nodes, starting with the master.
+   */
+  private static final class Cache {
+
+    /**
+     * The Jenkins instance that the names were read from.
+     */
+    final Jenkins jenkins;
+
+    final List<String> names;
+
+    final ComboBoxModel model;
+
+    Cache(Jenkins jenkins, List<String> names) {
+      this.jenkins = jenkins;
+      this.names = names;
+      this.model = new ComboBoxModel(names);
+    }
+  }
+
+  /**
+   * Discards the cached names when the nodes change.
+   */
+  @Extension
+  public static final class Listener extends ComputerListener {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onConfigurationChange() {
+      invalidate();
+    }
+  }
+
+  private NodeNames() {
+  }
+}
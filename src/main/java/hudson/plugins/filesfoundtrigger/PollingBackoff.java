@@ -0,0 +1,116 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 Steven G. Brown
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive polling state of a single configuration. While consecutive
+ * searches find no files, the interval between searches is doubled, up to a
+ * ceiling. As soon as files are found, searches resume at the rate of the
+ * crontab specification.
+ *
+ * @author Steven G. Brown
+ */
+final class PollingBackoff {
+
+  /**
+   * The interval after the first search that finds no files.
+   */
+  private static final long BASE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  /**
+   * Allowance for cron ticks that occur slightly before the next search is
+   * due.
+   */
+  private static final long TOLERANCE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  /**
+   * The number of consecutive searches that found no files.
+   */
+  private int misses;
+
+  /**
+   * The time before which searches are skipped.
+   */
+  private long nextSearch;
+
+  /**
+   * Determine whether a search is due.
+   *
+   * @param now
+   *          the current time
+   * @return {@code true} if the configuration should be searched
+   */
+  synchronized boolean isDue(long now) {
+    return now + TOLERANCE_MILLIS >= nextSearch;
+  }
+
+  /**
+   * Record the result of a search.
+   *
+   * @param time
+   *          the time that the search completed
+   * @param found
+   *          whether any files were found
+   * @param ceilingMillis
+   *          the maximum interval between searches, in milliseconds
+   */
+  synchronized void searched(long time, boolean found, long ceilingMillis) {
+    if (found) {
+      reset();
+      return;
+    }
+    misses++;
+    long interval = BASE_MILLIS << Math.min(misses - 1, 20);
+    nextSearch = time + Math.min(interval, ceilingMillis);
+  }
+
+  /**
+   * Resume searching at the rate of the crontab specification.
+   */
+  synchronized void reset() {
+    misses = 0;
+    nextSearch = 0;
+  }
+
+  /**
+   * Get the number of consecutive searches that found no files.
+   *
+   * @return the number of searches
+   */
+  synchronized int getMisses() {
+    return misses;
+  }
+
+  /**
+   * Get the time of the next search.
+   *
+   * @return the time before which searches are skipped, or zero if the next
+   *         search is not delayed
+   */
+  synchronized long getNextSearch() {
+    return nextSearch;
+  }
+}
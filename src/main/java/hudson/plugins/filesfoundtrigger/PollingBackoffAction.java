@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 Steven G. Brown
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import hudson.model.Action;
+
+/**
+ * Shows the adaptive polling state of a {@link FilesFoundTrigger} on the job
+ * page.
+ *
+ * @author Steven G. Brown
+ */
+public final class PollingBackoffAction implements Action {
+
+  private final FilesFoundTrigger trigger;
+
+  PollingBackoffAction(FilesFoundTrigger trigger) {
+    this.trigger = trigger;
+  }
+
+  /**
+   * Get the configurations whose searches are currently delayed. This is used
+   * by jobMain.jelly.
+   *
+   * @return the delayed configurations, ordered by the time of their next
+   *         search
+   */
+  public List<Entry> getEntries() {
+    long now = System.currentTimeMillis();
+    List<Entry> entries = new ArrayList<Entry>();
+    for (Map.Entry<FilesFoundTriggerConfig, PollingBackoff> backoff : trigger.getBackoffs()
+        .entrySet()) {
+      long nextSearch = backoff.getValue().getNextSearch();
+      if (nextSearch > now) {
+        entries.add(new Entry(backoff.getKey(), backoff.getValue().getMisses(), nextSearch));
+      }
+    }
+    Collections.sort(entries);
+    return entries;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getIconFileName() {
+    return null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getDisplayName() {
+    return Messages.PollingBackoff();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getUrlName() {
+    return null;
+  }
+
+  /**
+   * The adaptive polling state of a single configuration.
+   */
+  public static final class Entry implements Comparable<Entry> {
+
+    private final FilesFoundTriggerConfig config;
+
+    private final int misses;
+
+    private final long nextSearch;
+
+    Entry(FilesFoundTriggerConfig config, int misses, long nextSearch) {
+      this.config = config;
+      this.misses = misses;
+      this.nextSearch = nextSearch;
+    }
+
+    /**
+     * @return the configuration
+     */
+    public FilesFoundTriggerConfig getConfig() {
+      return config;
+    }
+
+    /**
+     * @return the number of consecutive searches that found no files
+     */
+    public int getMisses() {
+      return misses;
+    }
+
+    /**
+     * @return the time of the next search
+     */
+    public Date getNextSearch() {
+      return new Date(nextSearch);
+    }
+
+    @Override
+    public int compareTo(Entry other) {
+      return nextSearch < other.nextSearch ? -1 : nextSearch == other.nextSearch ? 0 : 1;
+    }
+  }
+}
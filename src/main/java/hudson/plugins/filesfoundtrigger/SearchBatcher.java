@@ -0,0 +1,283 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 Steven G. Brown
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.security.MasterToSlaveCallable;
+import jenkins.util.Timer;
+
+/**
+ * Collects the searches of each slave that are requested at around the same
+ * time, such as those of every job that is polled by the same cron tick, and
+ * performs them with a single call over the remoting channel. The latency of
+ * the channel is then paid once per slave, rather than once per job. The call
+ * is made by a thread of the {@link SearchExecutor}, subject to the limit of
+ * the {@link SearchThrottle}, and is cancelled if the slave does not respond
+ * in time.
+ *
+ * @author Steven G. Brown
+ */
+final class SearchBatcher {
+
+  private static final Logger LOGGER = Logger.getLogger(SearchBatcher.class.getName());
+
+  /**
+   * How long to collect searches before sending them to the slave, in
+   * milliseconds.
+   */
+  static long delayMillis = Long.getLong(SearchBatcher.class.getName() + ".delayMillis", 1000)
+      .longValue();
+
+  /**
+   * The searches waiting to be sent, keyed by the name of the slave.
+   */
+  private static final Map<String, List<Request>> pending = new HashMap<String, List<Request>>();
+
+  /**
+   * Submit a search of a slave. The search is performed with any other
+   * searches of the same slave that are submitted within
+   * {@link #delayMillis}.
+   *
+   * @param config
+   *          the expanded configuration
+   * @param scan
+   *          the scan to perform
+   * @return the future search result
+   */
+  static ListenableFuture<FileSearch.Result> submit(FilesFoundTriggerConfig config,
+      FileSearch.Scan scan) {
+    String nodeName = config.getNode();
+    Request request = new Request(config, scan);
+    synchronized (pending) {
+      List<Request> requests = pending.get(nodeName);
+      if (requests == null) {
+        requests = new ArrayList<Request>();
+        pending.put(nodeName, requests);
+        Timer.get().schedule(new Flush(nodeName), delayMillis, TimeUnit.MILLISECONDS);
+      }
+      requests.add(request);
+    }
+    return request.result;
+  }
+
+  /**
+   * Submit the pending searches of a slave to the {@link SearchThrottle}
+   * without waiting for {@link #delayMillis} to elapse.
+   *
+   * @param nodeName
+   *          the name of the slave
+   * @return the future number of searches that were sent to the slave, which
+   *         excludes those that were cancelled before they could be sent
+   */
+  static ListenableFuture<Integer> flush(final String nodeName) {
+    final List<Request> requests;
+    synchronized (pending) {
+      requests = pending.remove(nodeName);
+    }
+    if (requests == null) {
+      return Futures.immediateFuture(Integer.valueOf(0));
+    }
+    ListenableFuture<Integer> call = SearchThrottle.submit(nodeName, new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        return Integer.valueOf(send(nodeName, requests));
+      }
+    });
+    Futures.addCallback(call, new FutureCallback<Integer>() {
+      @Override
+      public void onSuccess(Integer result) {
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        // The queue is full.
+        for (Request request : requests) {
+          request.result.setException(t);
+        }
+      }
+    });
+    return call;
+  }
+
+  /**
+   * Send the given searches to a slave, apart from those that have been
+   * cancelled.
+   *
+   * @return the number of searches sent
+   */
+  private static int send(String nodeName, List<Request> pendingRequests) {
+    List<Request> requests = new ArrayList<Request>();
+    for (Request request : pendingRequests) {
+      if (!request.result.isCancelled()) {
+        requests.add(request);
+      }
+    }
+    if (requests.isEmpty()) {
+      return 0;
+    }
+    LOGGER.log(Level.FINE, "Performing {0} searches on {1}",
+        new Object[] { Integer.valueOf(requests.size()), nodeName });
+    try {
+      VirtualChannel channel = NodeChannels.channel(nodeName);
+      if (channel == null) {
+        throw new IOException(Messages.NodeOffline(nodeName));
+      }
+      Outcome[] outcomes = SearchExecutor.get(channel.callAsync(new BatchCallable(requests)),
+          nodeName);
+      for (int i = 0; i < requests.size(); i++) {
+        Request request = requests.get(i);
+        if (outcomes[i].error != null) {
+          request.result.setException(outcomes[i].error);
+        } else {
+          request.result.set(FileSearch.result(request.config, outcomes[i].found));
+        }
+      }
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      for (Request request : requests) {
+        request.result.setException(e);
+      }
+    }
+    return requests.size();
+  }
+
+  /**
+   * A search waiting to be sent to a slave.
+   */
+  private static final class Request {
+
+    final FilesFoundTriggerConfig config;
+
+    final FileSearch.Scan scan;
+
+    final SettableFuture<FileSearch.Result> result = SettableFuture.create();
+
+    Request(FilesFoundTriggerConfig config, FileSearch.Scan scan) {
+      this.config = config;
+      this.scan = scan;
+    }
+  }
+
+  /**
+   * Task which sends the pending searches of a slave.
+   */
+  private static final class Flush implements Runnable {
+
+    private final String nodeName;
+
+    Flush(String nodeName) {
+      this.nodeName = nodeName;
+    }
+
+    @Override
+    public void run() {
+      flush(nodeName);
+    }
+  }
+
+  /**
+   * The outcome of a single search of a batch.
+   */
+  private static final class Outcome implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The files found, or {@code null} if the directory does not exist or the
+     * search failed.
+     */
+    @CheckForNull
+    final FileSearch.Matches found;
+
+    /**
+     * The reason that the search failed, or {@code null} if it succeeded.
+     */
+    @CheckForNull
+    final Exception error;
+
+    Outcome(@CheckForNull FileSearch.Matches found, @CheckForNull Exception error) {
+      this.found = found;
+      this.error = error;
+    }
+  }
+
+  /**
+   * {@link hudson.remoting.Callable} which performs several searches on a slave.
+   * The failure of one search does not affect the others.
+   */
+  private static final class BatchCallable extends MasterToSlaveCallable<Outcome[], IOException> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] directories;
+
+    private final FileSearch.Scan[] scans;
+
+    BatchCallable(List<Request> requests) {
+      this.directories = new String[requests.size()];
+      this.scans = new FileSearch.Scan[requests.size()];
+      for (int i = 0; i < directories.length; i++) {
+        directories[i] = requests.get(i).config.getDirectory();
+        scans[i] = requests.get(i).scan;
+      }
+    }
+
+    @Override
+    public Outcome[] call() throws IOException {
+      Outcome[] outcomes = new Outcome[scans.length];
+      for (int i = 0; i < scans.length; i++) {
+        try {
+          // Null indicates that the directory does not exist.
+          outcomes[i] = new Outcome(scans[i].perform(new File(directories[i])), null);
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        } catch (RuntimeException e) {
+          outcomes[i] = new Outcome(null, e);
+        }
+      }
+      return outcomes;
+    }
+  }
+
+  private SearchBatcher() {
+  }
+}
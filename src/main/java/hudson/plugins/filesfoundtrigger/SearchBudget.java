@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 Steven G. Brown
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Limits on the cost of a single file search: the time it may take and the
+ * number of directory entries it may visit. A search that exceeds its budget
+ * is stopped, so that one badly written pattern cannot hold up polling.
+ *
+ * @author Steven G. Brown
+ */
+final class SearchBudget implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The limit that stopped a search.
+   */
+  enum Limit {
+
+    /**
+     * The search took too long.
+     */
+    TIME,
+
+    /**
+     * The search visited too many directory entries.
+     */
+    ENTRIES
+  }
+
+  private final long maxMillis;
+
+  private final int maxEntries;
+
+  /**
+   * Create a new {@link SearchBudget}.
+   *
+   * @param maxMillis
+   *          the maximum time that a search may take, in milliseconds, or zero
+   *          for no limit
+   * @param maxEntries
+   *          the maximum number of directory entries that a search may visit,
+   *          or zero for no limit
+   */
+  SearchBudget(long maxMillis, int maxEntries) {
+    this.maxMillis = maxMillis;
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Determine whether this budget places no limit on a search.
+   *
+   * @return {@code true} if there are no limits
+   */
+  boolean isUnlimited() {
+    return maxMillis <= 0 && maxEntries <= 0;
+  }
+
+  /**
+   * Start measuring the cost of a search.
+   *
+   * @return the meter for the new search
+   */
+  Meter start() {
+    return new Meter();
+  }
+
+  /**
+   * Measures the cost of a single search. This may be used by several threads
+   * at once.
+   */
+  final class Meter {
+
+    private final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxMillis);
+
+    private final AtomicInteger entries = new AtomicInteger();
+
+    /**
+     * Record that a directory entry has been visited.
+     *
+     * @return the limit that has been exceeded, or {@code null} if the search
+     *         may continue
+     */
+    @CheckForNull
+    Limit visit() {
+      if (maxEntries > 0 && entries.incrementAndGet() > maxEntries) {
+        return Limit.ENTRIES;
+      }
+      if (maxMillis > 0 && System.nanoTime() - deadline > 0) {
+        return Limit.TIME;
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 Steven G. Brown
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import jenkins.util.Timer;
+
+/**
+ * Shares a single search between the triggers whose expanded configurations
+ * are identical. A search is shared while it is running, and its result is
+ * reused for a short time after it has completed, so that the jobs which
+ * watch the same files and are polled by the same cron tick search only
+ * once. A running search is cancelled once none of the triggers that share it
+ * are waiting for the result.
+ *
+ * @author Steven G. Brown
+ */
+final class SearchCoalescer {
+
+  /**
+   * How long the result of a search is reused after it has completed, in
+   * milliseconds.
+   */
+  static long freshnessMillis = Long
+      .getLong(SearchCoalescer.class.getName() + ".freshnessMillis", 10000).longValue();
+
+  /**
+   * The running and recently completed searches, keyed by the expanded
+   * configuration and the limit.
+   */
+  private static final Map<List<Object>, Shared> searches = new HashMap<List<Object>, Shared>();
+
+  /**
+   * Count the files that match the given configuration, or share the running
+   * or recently completed search of an identical configuration.
+   *
+   * @param config
+   *          the expanded configuration
+   * @param limit
+   *          the maximum number of files to count
+   * @return the future search result
+   * @see FileSearch#performAsync(FilesFoundTriggerConfig, int)
+   */
+  static ListenableFuture<FileSearch.Result> search(FilesFoundTriggerConfig config, int limit) {
+    final List<Object> key = key(config, limit);
+    final ListenableFuture<FileSearch.Result> search;
+    synchronized (searches) {
+      Shared shared = searches.get(key);
+      if (shared != null) {
+        shared.waiters++;
+        return shared.search;
+      }
+      search = FileSearch.performAsync(config, limit);
+      searches.put(key, new Shared(search));
+    }
+    search.addListener(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Futures.getUnchecked(search);
+        } catch (RuntimeException e) {
+          // Do not share a failed search.
+          remove(key, search);
+          return;
+        }
+        Timer.get().schedule(new Runnable() {
+          @Override
+          public void run() {
+            remove(key, search);
+          }
+        }, freshnessMillis, TimeUnit.MILLISECONDS);
+      }
+    }, MoreExecutors.sameThreadExecutor());
+    return search;
+  }
+
+  /**
+   * Stop waiting for a search that was returned by
+   * {@link #search(FilesFoundTriggerConfig, int)}. The search is cancelled if
+   * it is still running and no other trigger is waiting for it.
+   *
+   * @param config
+   *          the expanded configuration
+   * @param limit
+   *          the maximum number of files to count
+   * @param search
+   *          the future search result
+   */
+  static void cancel(FilesFoundTriggerConfig config, int limit,
+      ListenableFuture<FileSearch.Result> search) {
+    List<Object> key = key(config, limit);
+    synchronized (searches) {
+      Shared shared = searches.get(key);
+      if (shared == null || shared.search != search || search.isDone() || --shared.waiters > 0) {
+        return;
+      }
+      searches.remove(key);
+    }
+    search.cancel(false);
+  }
+
+  private static List<Object> key(FilesFoundTriggerConfig config, int limit) {
+    return Arrays.<Object>asList(config, Integer.valueOf(limit));
+  }
+
+  private static void remove(List<Object> key, ListenableFuture<FileSearch.Result> search) {
+    synchronized (searches) {
+      Shared shared = searches.get(key);
+      if (shared != null && shared.search == search) {
+        searches.remove(key);
+      }
+    }
+  }
+
+  /**
+   * A search and the number of triggers waiting for it.
+   */
+  private static final class Shared {
+
+    final ListenableFuture<FileSearch.Result> search;
+
+    int waiters = 1;
+
+    Shared(ListenableFuture<FileSearch.Result> search) {
+      this.search = search;
+    }
+  }
+
+  private SearchCoalescer() {
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 Steven G. Brown
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * The threads that perform file searches. Polling submits the searches to
+ * this executor and returns, so that a slow directory or slave does not delay
+ * the other triggers that run on the Jenkins cron thread.
+ * <p>
+ * The number of threads and the length of the queue are bounded. When the
+ * queue is full, further searches fail until the queued searches have been
+ * performed.
+ * <p>
+ * Calls over a remoting channel are made by a separate set of threads, so
+ * that unresponsive slaves cannot hold up the searches of the master. Each
+ * call is cancelled if the slave does not respond within
+ * {@link #callTimeoutSeconds}, so that they cannot hold up the other slaves
+ * for long either.
+ *
+ * @author Steven G. Brown
+ */
+final class SearchExecutor {
+
+  /**
+   * The maximum number of searches to perform concurrently.
+   */
+  static final int POOL_SIZE = Integer
+      .getInteger(SearchExecutor.class.getName() + ".poolSize", 4).intValue();
+
+  /**
+   * The maximum number of searches waiting to be performed.
+   */
+  static final int QUEUE_SIZE = Integer
+      .getInteger(SearchExecutor.class.getName() + ".queueSize", 1000).intValue();
+
+  /**
+   * The maximum time to wait for a slave to respond to a call, in seconds.
+   * This should be longer than the time budget of a search.
+   */
+  static int callTimeoutSeconds = Integer
+      .getInteger(SearchExecutor.class.getName() + ".callTimeoutSeconds", 300).intValue();
+
+  private static final ListeningExecutorService executor = create(POOL_SIZE, QUEUE_SIZE);
+
+  private static final ListeningExecutorService remoteExecutor = create(POOL_SIZE, QUEUE_SIZE,
+      "FilesFoundTrigger remote call %d");
+
+  /**
+   * Create an executor.
+   *
+   * @param poolSize
+   *          the maximum number of threads
+   * @param queueSize
+   *          the maximum number of tasks waiting for a thread
+   * @return the new executor
+   */
+  static ListeningExecutorService create(int poolSize, int queueSize) {
+    return create(poolSize, queueSize, "FilesFoundTrigger search %d");
+  }
+
+  private static ListeningExecutorService create(int poolSize, int queueSize,
+      String nameFormat) {
+    ThreadPoolExecutor threadPool = new ThreadPoolExecutor(poolSize, poolSize, 60,
+        TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize),
+        new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+    threadPool.allowCoreThreadTimeOut(true);
+    return MoreExecutors.listeningDecorator(threadPool);
+  }
+
+  /**
+   * Submit a task to the executor.
+   *
+   * @param task
+   *          the task
+   * @return the future result of the task, which fails with a
+   *         {@link RejectedExecutionException} if the queue is full
+   */
+  static <V> ListenableFuture<V> submit(Callable<V> task) {
+    return submit(executor, task);
+  }
+
+  /**
+   * Submit a task which makes calls over a remoting channel.
+   *
+   * @param task
+   *          the task
+   * @return the future result of the task, which fails with a
+   *         {@link RejectedExecutionException} if the queue is full
+   */
+  static <V> ListenableFuture<V> submitRemote(Callable<V> task) {
+    return submit(remoteExecutor, task);
+  }
+
+  /**
+   * Wait for the result of a call over a remoting channel. The call is
+   * cancelled if the slave does not respond within
+   * {@link #callTimeoutSeconds}, or if this thread is interrupted.
+   *
+   * @param call
+   *          the future result of the call
+   * @param nodeName
+   *          the name of the slave
+   * @return the result of the call
+   * @throws IOException
+   *           if the call failed or timed out
+   * @throws InterruptedException
+   *           if this thread was interrupted
+   */
+  static <V> V get(Future<V> call, String nodeName) throws IOException, InterruptedException {
+    try {
+      return call.get(callTimeoutSeconds, TimeUnit.SECONDS);
+    } catch (TimeoutException e) {
+      call.cancel(true);
+      throw new IOException(
+          Messages.NodeNotResponding(nodeName, Integer.valueOf(callTimeoutSeconds)), e);
+    } catch (InterruptedException e) {
+      call.cancel(true);
+      throw e;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      Throwables.propagateIfPossible(cause, IOException.class);
+      if (cause instanceof InterruptedException) {
+        throw (InterruptedException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Submit a task to the given executor.
+   *
+   * @param executorService
+   *          the executor
+   * @param task
+   *          the task
+   * @return the future result of the task, which fails with a
+   *         {@link RejectedExecutionException} if the queue is full
+   */
+  static <V> ListenableFuture<V> submit(ListeningExecutorService executorService,
+      Callable<V> task) {
+    try {
+      return executorService.submit(task);
+    } catch (RejectedExecutionException e) {
+      return Futures.immediateFailedFuture(e);
+    }
+  }
+
+  private SearchExecutor() {
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 Steven G. Brown
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import static hudson.Util.fixNull;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Node;
+import hudson.slaves.NodeProperty;
+import hudson.slaves.NodePropertyDescriptor;
+import hudson.util.FormValidation;
+
+/**
+ * Overrides the maximum number of {@link FilesFoundTrigger} searches that run
+ * at once on a single node.
+ *
+ * @author Steven G. Brown
+ * @since 1.6
+ */
+public final class SearchLimitNodeProperty extends NodeProperty<Node> {
+
+  /**
+   * The maximum number of searches to run at once on this node, or zero for no
+   * limit.
+   */
+  private final String maxSearches;
+
+  /**
+   * Create a new {@link SearchLimitNodeProperty}.
+   *
+   * @param maxSearches
+   *          the maximum number of searches to run at once on this node, or
+   *          zero for no limit
+   */
+  @DataBoundConstructor
+  public SearchLimitNodeProperty(String maxSearches) {
+    this.maxSearches = fixNull(maxSearches).trim();
+  }
+
+  /**
+   * Get the maximum number of searches to run at once on this node.
+   *
+   * @return the maximum number of searches, or zero for no limit
+   */
+  public String getMaxSearches() {
+    return maxSearches;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("maxSearches", maxSearches).toString();
+  }
+
+  /**
+   * Registers {@link SearchLimitNodeProperty} as a {@link NodeProperty}
+   * extension.
+   */
+  @Extension
+  public static final class DescriptorImpl extends NodePropertyDescriptor {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getDisplayName() {
+      return Messages.SearchLimitDisplayName();
+    }
+
+    /**
+     * Form validation for the {@code maxSearches} field.
+     *
+     * @param value
+     *          the value of the field
+     * @return the result of the validation
+     */
+    public FormValidation doCheckMaxSearches(@QueryParameter String value) {
+      if (Util.fixEmptyAndTrim(value) == null) {
+        return FormValidation.ok();
+      }
+      return FormValidation.validateNonNegativeInteger(value);
+    }
+  }
+}
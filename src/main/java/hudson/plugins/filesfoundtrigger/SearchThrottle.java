@@ -0,0 +1,367 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 Steven G. Brown
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Node;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.slaves.ComputerListener;
+import jenkins.model.Jenkins;
+
+/**
+ * Limits the number of searches that run at once on each node, so that a node
+ * targeted by many jobs is not swamped. Searches beyond the limit wait in a
+ * queue, and are submitted to the {@link SearchExecutor} in the order that
+ * they arrived. Waiting searches do not occupy a thread, and are dropped if
+ * they are cancelled before they start.
+ * <p>
+ * The limit is defined for all nodes by a system property, and may be
+ * overridden for a single node with a {@link SearchLimitNodeProperty}. The
+ * number of running and waiting searches of each node is shown by its
+ * {@link SearchThrottleAction}. The
+ * limit of each node is cached, and the cache is discarded when nodes are
+ * reconfigured or the global configuration is saved.
+ *
+ * @author Steven G. Brown
+ */
+final class SearchThrottle {
+
+  private static final Logger LOGGER = Logger.getLogger(SearchThrottle.class.getName());
+
+  /**
+   * The maximum number of searches to run at once on a node without a
+   * {@link SearchLimitNodeProperty}, or zero for no limit.
+   */
+  static int maxSearches = Integer.getInteger(SearchThrottle.class.getName() + ".maxSearches", 2)
+      .intValue();
+
+  /**
+   * The state of each node with running searches, keyed by the name of the
+   * node. The master is keyed by an empty string.
+   */
+  private static final Map<String, Permits> nodes = new HashMap<String, Permits>();
+
+  /**
+   * The limit defined by the {@link SearchLimitNodeProperty} of each node that
+   * has been looked up, or a negative number if the node does not override
+   * {@link #maxSearches}. Keyed like {@link #nodes}.
+   */
+  private static final ConcurrentMap<String, Integer> limits =
+      new ConcurrentHashMap<String, Integer>();
+
+  private static final Integer NO_PROPERTY = Integer.valueOf(-1);
+
+  /**
+   * The Jenkins instance that {@link #limits} was looked up from.
+   */
+  private static volatile Jenkins limitsFor;
+
+  /**
+   * Incremented by {@link #invalidateLimits()}, so that a limit which is
+   * looked up while the nodes change is not cached.
+   */
+  private static final AtomicLong generation = new AtomicLong();
+
+  /**
+   * Submit a search of the given node.
+   *
+   * @param nodeName
+   *          the name of the node, or {@code null} for the master
+   * @param task
+   *          the search
+   * @return the future result of the search
+   */
+  static <V> ListenableFuture<V> submit(@CheckForNull String nodeName, Callable<V> task) {
+    return submit(nodeName == null ? "" : nodeName, limit(nodeName), task);
+  }
+
+  /**
+   * Submit a search of the given node.
+   *
+   * @param key
+   *          identifies the node
+   * @param limit
+   *          the maximum number of searches to run at once on the node, or
+   *          zero for no limit
+   * @param task
+   *          the search
+   * @return the future result of the search
+   */
+  static <V> ListenableFuture<V> submit(String key, int limit, Callable<V> task) {
+    Search<V> search = new Search<V>(key, task);
+    synchronized (nodes) {
+      Permits permits = nodes.get(key);
+      if (permits == null) {
+        permits = new Permits();
+        nodes.put(key, permits);
+      }
+      if (limit > 0 && permits.running >= limit) {
+        permits.waiting.add(search);
+        LOGGER.log(Level.FINE, "Search of {0} queued: {1} running, {2} waiting", new Object[] {
+            key, Integer.valueOf(permits.running), Integer.valueOf(permits.waiting.size()) });
+        return search.result;
+      }
+      permits.running++;
+    }
+    if (!search.start()) {
+      release(key);
+    }
+    return search.result;
+  }
+
+  /**
+   * Get the number of searches of the given node that are running.
+   *
+   * @param key
+   *          identifies the node
+   * @return the number of running searches
+   */
+  static int getRunning(String key) {
+    synchronized (nodes) {
+      Permits permits = nodes.get(key);
+      return permits == null ? 0 : permits.running;
+    }
+  }
+
+  /**
+   * Get the number of searches of the given node that are waiting for a
+   * running search to complete.
+   *
+   * @param key
+   *          identifies the node
+   * @return the number of waiting searches
+   */
+  static int getWaiting(String key) {
+    synchronized (nodes) {
+      Permits permits = nodes.get(key);
+      return permits == null ? 0 : permits.waiting.size();
+    }
+  }
+
+  /**
+   * Pass the permit of a completed search to the next waiting search, if any.
+   */
+  private static void release(String key) {
+    Search<?> next;
+    do {
+      synchronized (nodes) {
+        Permits permits = nodes.get(key);
+        do {
+          next = permits.waiting.poll();
+        } while (next != null && next.result.isCancelled());
+        if (next == null) {
+          if (--permits.running == 0) {
+            nodes.remove(key);
+          }
+          return;
+        }
+      }
+      // A loop rather than recursion, since many waiting searches may have
+      // been cancelled or may be rejected by a full executor.
+    } while (!next.start());
+  }
+
+  /**
+   * Get the maximum number of searches to run at once on the given node. The
+   * limit of each node is cached until {@link #invalidateLimits()} is called.
+   *
+   * @param nodeName
+   *          the name of the node, or {@code null} for the master
+   * @return the limit, or zero for no limit
+   */
+  static int limit(@CheckForNull String nodeName) {
+    Jenkins jenkins = Jenkins.getInstance();
+    if (jenkins != limitsFor) {
+      limits.clear();
+      limitsFor = jenkins;
+    }
+    String key = nodeName == null ? "" : nodeName;
+    Integer limit = limits.get(key);
+    if (limit == null) {
+      long lookedUpAt = generation.get();
+      Node node = jenkins == null || nodeName == null ? jenkins : jenkins.getNode(nodeName);
+      if (node == null) {
+        return maxSearches;
+      }
+      limit = propertyLimit(node);
+      if (limits.putIfAbsent(key, limit) == null && generation.get() != lookedUpAt) {
+        // The node may have been reconfigured since it was looked up.
+        limits.remove(key, limit);
+      }
+    }
+    return limit.intValue() < 0 ? maxSearches : limit.intValue();
+  }
+
+  private static Integer propertyLimit(Node node) {
+    SearchLimitNodeProperty property = node.getNodeProperty(SearchLimitNodeProperty.class);
+    if (property != null) {
+      try {
+        return Integer.valueOf(Integer.parseInt(property.getMaxSearches()));
+      } catch (NumberFormatException e) {
+        // Use the global limit.
+      }
+    }
+    return NO_PROPERTY;
+  }
+
+  /**
+   * Discard the cached limits, so that the node properties are read again.
+   */
+  static void invalidateLimits() {
+    generation.incrementAndGet();
+    limits.clear();
+  }
+
+  /**
+   * Discards the cached limits when nodes are reconfigured.
+   */
+  @Extension
+  public static final class NodeListener extends ComputerListener {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onConfigurationChange() {
+      invalidateLimits();
+    }
+  }
+
+  /**
+   * Discards the cached limits when the global configuration is saved, since
+   * the node properties of the master are saved with it.
+   */
+  @Extension
+  public static final class SaveListener extends SaveableListener {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onChange(Saveable o, XmlFile file) {
+      if (o instanceof Jenkins) {
+        invalidateLimits();
+      }
+    }
+  }
+
+  /**
+   * The searches of a single node.
+   */
+  private static final class Permits {
+
+    int running;
+
+    final Queue<Search<?>> waiting = new ArrayDeque<Search<?>>();
+  }
+
+  /**
+   * A search that holds, or is waiting for, a permit of its node.
+   */
+  private static final class Search<V> {
+
+    final String key;
+
+    final Callable<V> task;
+
+    final SettableFuture<V> result = SettableFuture.create();
+
+    Search(String key, Callable<V> task) {
+      this.key = key;
+      this.task = task;
+    }
+
+    /**
+     * Submit this search to the {@link SearchExecutor}. The permit is released
+     * once the search completes.
+     *
+     * @return {@code false} if the permit is free again, because this search
+     *         has been cancelled or has already completed
+     */
+    boolean start() {
+      if (result.isCancelled()) {
+        return false;
+      }
+      final ListenableFuture<V> search = key.isEmpty() ? SearchExecutor.submit(task)
+          : SearchExecutor.submitRemote(task);
+      if (search.isDone()) {
+        // Most likely, the queue of the executor is full.
+        complete(search);
+        return false;
+      }
+      result.addListener(new Runnable() {
+        @Override
+        public void run() {
+          if (result.isCancelled()) {
+            // Does not interrupt a search that has already started.
+            search.cancel(false);
+          }
+        }
+      }, MoreExecutors.sameThreadExecutor());
+      search.addListener(new Runnable() {
+        @Override
+        public void run() {
+          release(key);
+          complete(search);
+        }
+      }, MoreExecutors.sameThreadExecutor());
+      return true;
+    }
+
+    private void complete(ListenableFuture<V> search) {
+      try {
+        result.set(Uninterruptibles.getUninterruptibly(search));
+      } catch (ExecutionException e) {
+        result.setException(e.getCause());
+      } catch (CancellationException e) {
+        result.cancel(false);
+      }
+    }
+  }
+
+  private SearchThrottle() {
+  }
+}
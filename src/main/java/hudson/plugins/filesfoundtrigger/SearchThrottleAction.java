@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017 Steven G. Brown
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import javax.annotation.CheckForNull;
+
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Computer;
+import hudson.model.TransientComputerActionFactory;
+
+/**
+ * Shows the number of file searches that are running and waiting on a node,
+ * as limited by the {@link SearchThrottle}.
+ *
+ * @author Steven G. Brown
+ */
+public final class SearchThrottleAction implements Action {
+
+  private final Computer computer;
+
+  SearchThrottleAction(Computer computer) {
+    this.computer = computer;
+  }
+
+  /**
+   * @return the computer of the node
+   */
+  public Computer getComputer() {
+    return computer;
+  }
+
+  /**
+   * @return the number of searches of the node that are running
+   */
+  public int getRunning() {
+    return SearchThrottle.getRunning(computer.getName());
+  }
+
+  /**
+   * @return the number of searches of the node that are waiting for a running
+   *         search to complete
+   */
+  public int getWaiting() {
+    return SearchThrottle.getWaiting(computer.getName());
+  }
+
+  /**
+   * @return the maximum number of searches to run at once on the node, or zero
+   *         for no limit
+   */
+  public int getLimit() {
+    return SearchThrottle.limit(nodeName());
+  }
+
+  /**
+   * The name of the node, or {@code null} for the master.
+   */
+  @CheckForNull
+  private String nodeName() {
+    String name = computer.getName();
+    return name.isEmpty() ? null : name;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getIconFileName() {
+    return "clock.png";
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getDisplayName() {
+    return Messages.SearchThrottle();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getUrlName() {
+    return "filesFoundTriggerSearches";
+  }
+
+  /**
+   * Adds a {@link SearchThrottleAction} to every node.
+   */
+  @Extension
+  public static final class Factory extends TransientComputerActionFactory {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<? extends Action> createFor(Computer target) {
+      return Collections.singleton(new SearchThrottleAction(target));
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ * 
+ * Copyright (c) 2017 Steven G. Brown
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.powermock.api.mockito.PowerMockito.mock;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import hudson.EnvVars;
+import hudson.model.Saveable;
+import hudson.slaves.EnvironmentVariablesNodeProperty;
+import hudson.slaves.NodeProperty;
+import hudson.slaves.NodePropertyDescriptor;
+import hudson.util.DescribableList;
+import jenkins.model.Jenkins;
+
+/**
+ * Unit test for the {@link ExpansionEnvironment} class.
+ * 
+ * @author Steven G. Brown
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Jenkins.class)
+public class ExpansionEnvironmentTest {
+
+  private Jenkins jenkins;
+
+  private DescribableList<NodeProperty<?>, NodePropertyDescriptor> globalNodeProperties;
+
+  /**
+   */
+  @Before
+  public void setUp() {
+    jenkins = mock(Jenkins.class);
+    globalNodeProperties = new DescribableList<NodeProperty<?>, NodePropertyDescriptor>(
+        Saveable.NOOP);
+    when(jenkins.getGlobalNodeProperties()).thenReturn(globalNodeProperties);
+    mockStatic(Jenkins.class);
+    when(Jenkins.getInstance()).thenReturn(jenkins);
+  }
+
+  /**
+   */
+  @Test
+  public void globalPropertiesAreMerged() {
+    defineGlobalProperty("property", "value");
+    assertThat(ExpansionEnvironment.get().get("property"), is("value"));
+  }
+
+  /**
+   */
+  @Test
+  public void variablesAreCached() {
+    EnvVars vars = ExpansionEnvironment.get();
+    assertThat(ExpansionEnvironment.get(), is(sameInstance(vars)));
+  }
+
+  /**
+   */
+  @Test
+  public void variablesAreMergedAgainWhenGlobalConfigurationIsSaved() {
+    ExpansionEnvironment.get();
+    defineGlobalProperty("property", "value");
+    assertThat(ExpansionEnvironment.get().get("property"), is(nullValue()));
+    new ExpansionEnvironment.SaveListener().onChange(jenkins, null);
+    assertThat(ExpansionEnvironment.get().get("property"), is("value"));
+  }
+
+  private void defineGlobalProperty(String name, String value) {
+    EnvironmentVariablesNodeProperty.Entry entry = new EnvironmentVariablesNodeProperty.Entry(name,
+        value);
+    EnvironmentVariablesNodeProperty property = new EnvironmentVariablesNodeProperty(entry);
+    globalNodeProperties.add(property);
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * The MIT License
+ * 
+ * Copyright (c) 2017 Steven G. Brown
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link FilePatterns} class.
+ * 
+ * @author Steven G. Brown
+ */
+@SuppressWarnings("boxing")
+public class FilePatternsTest {
+
+  /**
+   */
+  @Test
+  public void anyDirectories() {
+    assertThat(matches("**", "", "a"), is(true));
+    assertThat(matches("**", "", "a/b/c"), is(true));
+    assertThat(matches("**/c", "", "c"), is(true));
+    assertThat(matches("**/c", "", "a/b/c"), is(true));
+    assertThat(matches("a/**/c", "", "a/c"), is(true));
+    assertThat(matches("a/**/c", "", "a/b/b/c"), is(true));
+    assertThat(matches("a/**/c", "", "b/c"), is(false));
+    assertThat(matches("a/**/b/**/c", "", "a/x/b/y/c"), is(true));
+    assertThat(matches("a/**/b/**/c", "", "a/x/y/c"), is(false));
+  }
+
+  /**
+   */
+  @Test
+  public void wildcards() {
+    assertThat(matches("*.xml", "", "a.xml"), is(true));
+    assertThat(matches("*.xml", "", "b/a.xml"), is(false));
+    assertThat(matches("?.xml", "", "a.xml"), is(true));
+    assertThat(matches("?.xml", "", "ab.xml"), is(false));
+    assertThat(matches("a*b", "", "ab"), is(true));
+    assertThat(matches("a.b", "", "axb"), is(false));
+  }
+
+  /**
+   */
+  @Test
+  public void trailingSeparator() {
+    assertThat(matches("a/", "", "a/b/c"), is(true));
+    assertThat(matches("a\\", "", "a/b"), is(true));
+    assertThat(matches("a/", "", "b/a"), is(false));
+  }
+
+  /**
+   */
+  @Test
+  public void multiplePatterns() {
+    assertThat(matches("a, b", "", "b"), is(true));
+    assertThat(matches("a, b", "", "c"), is(false));
+  }
+
+  /**
+   */
+  @Test
+  public void patternsWithCommonSegments() {
+    String includes = "a/*.xml, a/*.txt, a/b/c, a/b/*, a/**/d, *.xml, x*";
+    assertThat(matches(includes, "", "a/x.xml"), is(true));
+    assertThat(matches(includes, "", "a/x.txt"), is(true));
+    assertThat(matches(includes, "", "a/x.log"), is(false));
+    assertThat(matches(includes, "", "a/b/e"), is(true));
+    assertThat(matches(includes, "", "a/b/c/d"), is(true));
+    assertThat(matches(includes, "", "a/b/c/e"), is(false));
+    assertThat(matches(includes, "", ".xml"), is(true));
+    assertThat(matches(includes, "", "b"), is(false));
+    assertThat(matches(includes, "", "xyz"), is(true));
+  }
+
+  /**
+   */
+  @Test
+  public void excludes() {
+    assertThat(matches("**", "**/*.tmp", "a/b.tmp"), is(false));
+    assertThat(matches("**", "**/*.tmp", "a/b.xml"), is(true));
+    assertThat(matches("**", "a/, b", "a/b"), is(false));
+    assertThat(matches("**", "a/, b", "b"), is(false));
+  }
+
+  /**
+   */
+  @Test
+  public void absolutePattern() {
+    assertThat(matches("/a", "", "a"), is(false));
+  }
+
+  /**
+   */
+  @Test
+  public void couldMatchBelow() {
+    assertThat(couldMatchBelow("a/b/*.xml", "a"), is(true));
+    assertThat(couldMatchBelow("a/b/*.xml", "a/b"), is(true));
+    assertThat(couldMatchBelow("a/b/*.xml", "a/b/c"), is(false));
+    assertThat(couldMatchBelow("a/b/*.xml", "c"), is(false));
+    assertThat(couldMatchBelow("a/*/c", "a/x"), is(true));
+    assertThat(couldMatchBelow("a/**/c", "a/x/y"), is(true));
+    assertThat(couldMatchBelow("**/c", "x"), is(true));
+    assertThat(couldMatchBelow("*.xml", "a"), is(false));
+    assertThat(couldMatchBelow("a/, b/", "b"), is(true));
+    assertThat(couldMatchBelow("/a/b", "a"), is(false));
+  }
+
+  /**
+   */
+  @Test
+  public void excludedDirectoriesAreNotScanned() {
+    assertThat(couldMatchBelow("**", "**/archive/**", "a/archive"), is(false));
+    assertThat(couldMatchBelow("**", "**/archive/**", "archive"), is(false));
+    assertThat(couldMatchBelow("**", "**/archive/**", "a/b"), is(true));
+    assertThat(couldMatchBelow("**", "tmp/", "tmp"), is(false));
+    assertThat(couldMatchBelow("**", "tmp/**", "a/tmp"), is(true));
+    assertThat(couldMatchBelow("**", "tmp/*", "tmp"), is(true));
+    assertThat(couldMatchBelow("**", "**", "a"), is(false));
+  }
+
+  /**
+   */
+  @Test
+  public void exactPaths() {
+    assertThat(exactPaths("READY, batch/done.flag, READY", ""),
+        is("[[READY], [batch, done.flag]]"));
+    assertThat(exactPaths("batch\\done.flag, /a", "**/*.tmp"), is("[[batch, done.flag]]"));
+    assertThat(exactPaths("READY, *.xml", ""), is("null"));
+    assertThat(exactPaths("batch/", ""), is("null"));
+    assertThat(exactPaths("../READY", ""), is("null"));
+  }
+
+  /**
+   */
+  @Test
+  public void compiledPatternsAreCached() {
+    FilePatterns patterns = FilePatterns.compile("a/**", "b");
+    assertThat(FilePatterns.compile("a/**", "b"), is(sameInstance(patterns)));
+  }
+
+  private static boolean matches(String includes, String excludes, String path) {
+    return FilePatterns.compile(includes, excludes).matches(path.split("/"));
+  }
+
+  private static String exactPaths(String includes, String excludes) {
+    List<String[]> paths = FilePatterns.compile(includes, excludes).getExactPaths();
+    return paths == null ? "null" : Arrays.deepToString(paths.toArray());
+  }
+
+  private static boolean couldMatchBelow(String includes, String directory) {
+    return couldMatchBelow(includes, "", directory);
+  }
+
+  private static boolean couldMatchBelow(String includes, String excludes, String directory) {
+    return FilePatterns.compile(includes, excludes).couldMatchBelow(directory.split("/"));
+  }
+}
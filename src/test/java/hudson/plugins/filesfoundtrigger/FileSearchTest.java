@@ -31,19 +31,30 @@ import static hudson.plugins.filesfoundtrigger.Support.TRIGGER_NUMBER;
 import static hudson.util.FormValidation.Kind.ERROR;
 import static hudson.util.FormValidation.Kind.OK;
 import static hudson.util.FormValidation.Kind.WARNING;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeThat;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 import org.hamcrest.CustomMatcher;
 import org.hamcrest.Matcher;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
 
 import com.google.common.collect.ImmutableList;
 
@@ -55,9 +66,18 @@ import hudson.util.FormValidation;
  * 
  * @author Steven G. Brown
  */
+@RunWith(Parameterized.class)
 @SuppressWarnings("boxing")
 public class FileSearchTest {
 
+  /**
+   * @return the search engines to test
+   */
+  @Parameters(name = "{0}")
+  public static Collection<Object[]> engines() {
+    return Arrays.asList(new Object[][] { { FileSearch.Engine.ANT }, { FileSearch.Engine.NIO } });
+  }
+
   /**
    */
   @Rule
@@ -65,6 +85,47 @@ public class FileSearchTest {
 
   private String userName = System.getProperty("user.name");
 
+  private final FileSearch.Engine engine;
+
+  private FileSearch.Engine defaultEngine;
+
+  private int defaultParallelism;
+
+  private boolean defaultIncremental;
+
+  private int defaultMaxEntries;
+
+  /**
+   * Create a new {@link FileSearchTest}.
+   * 
+   * @param engine
+   *          the search engine to test
+   */
+  public FileSearchTest(FileSearch.Engine engine) {
+    this.engine = engine;
+  }
+
+  /**
+   */
+  @Before
+  public void setUp() {
+    defaultEngine = FileSearch.engine;
+    defaultParallelism = FileSearch.parallelism;
+    defaultIncremental = FileSearch.incremental;
+    defaultMaxEntries = FileSearch.maxEntries;
+    FileSearch.engine = engine;
+  }
+
+  /**
+   */
+  @After
+  public void tearDown() {
+    FileSearch.engine = defaultEngine;
+    FileSearch.parallelism = defaultParallelism;
+    FileSearch.incremental = defaultIncremental;
+    FileSearch.maxEntries = defaultMaxEntries;
+  }
+
   /**
    * @throws Exception
    */
@@ -133,6 +194,210 @@ public class FileSearchTest {
         is(result(OK, Messages.NoFilesFound(), Collections.emptyList())));
   }
 
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void filesInSubdirectories() throws Exception {
+    folder.newFolder("a", "b");
+    folder.newFile("a/b/test.xml");
+    folder.newFile("a/test.xml");
+    folder.newFile("test.xml");
+    folder.newFile("a/b/test.txt");
+    assertThat(search(folder.getRoot().getAbsolutePath(), "a/**/*.xml", "", TRIGGER_NUMBER),
+        is(result(OK, Messages.MultipleFilesFound(2), ImmutableList.of(
+            "a" + File.separator + "b" + File.separator + "test.xml",
+            "a" + File.separator + "test.xml"))));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void multiplePatterns() throws Exception {
+    folder.newFolder("a");
+    folder.newFolder("b");
+    folder.newFile("a/test");
+    folder.newFile("b/test");
+    folder.newFile("test");
+    assertThat(search(folder.getRoot().getAbsolutePath(), "a/, test", "", TRIGGER_NUMBER),
+        is(result(OK, Messages.MultipleFilesFound(2),
+            ImmutableList.of("a" + File.separator + "test", "test"))));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void filesInSubdirectoryIgnored() throws Exception {
+    folder.newFolder("a");
+    folder.newFile("a/test");
+    folder.newFile("test");
+    assertThat(search(folder.getRoot().getAbsolutePath(), FILES, "a/", TRIGGER_NUMBER),
+        is(result(OK, Messages.SingleFileFound("test"), ImmutableList.of("test"))));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void exactPaths() throws Exception {
+    folder.newFolder("batch");
+    folder.newFolder("a");
+    folder.newFile("batch/done.flag");
+    folder.newFile("a/ignored");
+    folder.newFile("other");
+    assertThat(search(folder.getRoot().getAbsolutePath(),
+        "batch/done.flag, a/ignored, batch, missing", "a/", TRIGGER_NUMBER),
+        is(result(OK, Messages.SingleFileFound("batch" + File.separator + "done.flag"),
+            ImmutableList.of("batch" + File.separator + "done.flag"))));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void exactPathMustMatchCase() throws Exception {
+    folder.newFile("READY");
+    assertThat(search(folder.getRoot().getAbsolutePath(), "ready", "", TRIGGER_NUMBER),
+        is(result(OK, Messages.NoFilesFound(), ImmutableList.of())));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void parallelSearch() throws Exception {
+    FileSearch.parallelism = 4;
+    ImmutableList.Builder<String> expected = ImmutableList.builder();
+    for (String dir : new String[] { "a", "b", "c" }) {
+      folder.newFolder(dir, "sub");
+      folder.newFile(dir + "/sub/test");
+      folder.newFile(dir + "/test");
+      expected.add(dir + File.separator + "sub" + File.separator + "test");
+      expected.add(dir + File.separator + "test");
+    }
+    assertThat(search(folder.getRoot().getAbsolutePath(), FILES, IGNORED_FILES, TRIGGER_NUMBER),
+        is(result(OK, Messages.MultipleFilesFound(6), expected.build())));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void stopsWhenLimitReached() throws Exception {
+    folder.newFile("test");
+    folder.newFile("test2");
+    folder.newFile("test3");
+    FileSearch.Result result = search(folder.getRoot().getAbsolutePath(), FILES, IGNORED_FILES,
+        TRIGGER_NUMBER, 2);
+    assertThat(result.files, hasSize(2));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void limitNotReached() throws Exception {
+    folder.newFile("test");
+    folder.newFile("test2");
+    assertThat(
+        search(folder.getRoot().getAbsolutePath(), FILES, IGNORED_FILES, TRIGGER_NUMBER, 3),
+        is(result(OK, Messages.MultipleFilesFound(2), ImmutableList.of("test", "test2"))));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void zeroLimit() throws Exception {
+    folder.newFile("test");
+    search(folder.getRoot().getAbsolutePath(), FILES, IGNORED_FILES, "0", 0);
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeLimit() throws Exception {
+    folder.newFile("test");
+    search(folder.getRoot().getAbsolutePath(), FILES, IGNORED_FILES, "-1", -1);
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void countRetainsSampleOfFileNames() throws Exception {
+    for (int i = 0; i < FileSearch.SAMPLE_SIZE + 2; i++) {
+      folder.newFile("test" + i);
+    }
+    FileSearch.Result result = search(folder.getRoot().getAbsolutePath(), FILES, IGNORED_FILES,
+        TRIGGER_NUMBER, FileSearch.UNLIMITED);
+    assertThat(result.count, is(FileSearch.SAMPLE_SIZE + 2));
+    assertThat(result.files, hasSize(FileSearch.SAMPLE_SIZE));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void entryBudgetExceeded() throws Exception {
+    FileSearch.maxEntries = 2;
+    folder.newFile("test");
+    folder.newFile("test2");
+    folder.newFile("test3");
+    FileSearch.Result result = search(folder.getRoot().getAbsolutePath(), FILES, IGNORED_FILES,
+        TRIGGER_NUMBER);
+    assertThat(result.formValidation.kind, is(WARNING));
+    assertThat(result.count, is(lessThan(3)));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void incrementalSearchFindsNewFiles() throws Exception {
+    assumeThat(engine, is(FileSearch.Engine.NIO));
+    FileSearch.incremental = true;
+    File subdirectory = folder.newFolder("a");
+    folder.newFile("a/test");
+    makeOld(folder.getRoot());
+    makeOld(subdirectory);
+    search(folder.getRoot().getAbsolutePath(), FILES, IGNORED_FILES, TRIGGER_NUMBER);
+    folder.newFile("a/test2");
+    assertThat(search(folder.getRoot().getAbsolutePath(), FILES, IGNORED_FILES, TRIGGER_NUMBER),
+        is(result(OK, Messages.MultipleFilesFound(2), ImmutableList.of(
+            "a" + File.separator + "test", "a" + File.separator + "test2"))));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void incrementalSearchReusesUnmodifiedDirectories() throws Exception {
+    assumeThat(engine, is(FileSearch.Engine.NIO));
+    FileSearch.incremental = true;
+    File subdirectory = folder.newFolder("a");
+    File file = folder.newFile("a/test");
+    makeOld(folder.getRoot());
+    long modified = makeOld(subdirectory);
+    search(folder.getRoot().getAbsolutePath(), FILES, IGNORED_FILES, TRIGGER_NUMBER);
+
+    // Delete the file without changing the modification time of its directory.
+    assertThat(file.delete(), is(true));
+    assertThat(subdirectory.setLastModified(modified), is(true));
+    assertThat(search(folder.getRoot().getAbsolutePath(), FILES, IGNORED_FILES, TRIGGER_NUMBER),
+        is(result(OK, Messages.SingleFileFound("a" + File.separator + "test"),
+            ImmutableList.of("a" + File.separator + "test"))));
+  }
+
+  private static long makeOld(File directory) {
+    long modified = (System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)) / 1000 * 1000;
+    assertThat(directory.setLastModified(modified), is(true));
+    return modified;
+  }
+
   private FileSearch.Result search(String directory, String files, String ignoredFiles,
       String triggerNumber) throws Exception {
     FilesFoundTriggerConfig config = new FilesFoundTriggerConfig(MASTER_NODE, directory, files,
@@ -140,6 +405,13 @@ public class FileSearchTest {
     return FileSearch.perform(config);
   }
 
+  private FileSearch.Result search(String directory, String files, String ignoredFiles,
+      String triggerNumber, int limit) throws Exception {
+    FilesFoundTriggerConfig config = new FilesFoundTriggerConfig(MASTER_NODE, directory, files,
+        ignoredFiles, triggerNumber);
+    return FileSearch.perform(config, limit);
+  }
+
   private Matcher<FileSearch.Result> result(final FormValidation.Kind kind, final String message,
       final List<?> files) {
     return new CustomMatcher<FileSearch.Result>(
@@ -0,0 +1,251 @@
+/*
+ * The MIT License
+ * 
+ * Copyright (c) 2017 Steven G. Brown
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for the {@link FileWatcher} class.
+ * 
+ * @author Steven G. Brown
+ */
+@SuppressWarnings("boxing")
+public class FileWatcherTest {
+
+  /**
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final Semaphore notifications = new Semaphore(0);
+
+  private final FileWatcher.Listener listener = new FileWatcher.Listener() {
+    @Override
+    public void filesChanged() {
+      notifications.release();
+    }
+  };
+
+  private final List<FileWatcher.Handle> handles = new ArrayList<FileWatcher.Handle>();
+
+  private long defaultRetrySeconds;
+
+  /**
+   */
+  @Before
+  public void setUp() {
+    defaultRetrySeconds = FileWatcher.retrySeconds;
+  }
+
+  /**
+   */
+  @After
+  public void tearDown() {
+    for (FileWatcher.Handle handle : handles) {
+      handle.close();
+    }
+    FileWatcher.retrySeconds = defaultRetrySeconds;
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void fileCreated() throws Exception {
+    watch(folder.getRoot(), listener);
+    folder.newFile("test.xml");
+    assertThat(notified(), is(true));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void fileCreatedInNewSubdirectory() throws Exception {
+    watch(folder.getRoot(), listener);
+    folder.newFolder("a");
+    assertThat(notified(), is(true));
+    notifications.drainPermits();
+    folder.newFile("a/test.xml");
+    assertThat(notified(), is(true));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void directoriesAreRegisteredAgainAfterOverflow() throws Exception {
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    watch(folder.getRoot(), new FileWatcher.Listener() {
+      @Override
+      public void filesChanged() {
+        blocked.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        notifications.release();
+      }
+    });
+    folder.newFile("first.xml");
+    assertThat(blocked.await(10, TimeUnit.SECONDS), is(true));
+
+    // More events than a watch key holds, so the directory event is lost.
+    for (int i = 0; i < 1000; i++) {
+      folder.newFile("test" + i + ".txt");
+    }
+    folder.newFolder("a");
+    release.countDown();
+
+    // The first notification is for first.xml. The next one is only made once
+    // the new directory has been registered.
+    assertThat(notifications.tryAcquire(2, 10, TimeUnit.SECONDS), is(true));
+    notifications.drainPermits();
+    folder.newFile("a/test.xml");
+    assertThat(notified(), is(true));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void baseDirectoryCreatedLater() throws Exception {
+    FileWatcher.retrySeconds = 1;
+    File base = new File(folder.getRoot(), "base");
+    watch(base, listener);
+    assertThat(base.mkdir(), is(true));
+    // The dispatcher may have started waiting for events with the previous
+    // retry interval.
+    assertThat(notifications.tryAcquire(defaultRetrySeconds + 10, TimeUnit.SECONDS), is(true));
+    notifications.drainPermits();
+    assertThat(new File(base, "test.xml").createNewFile(), is(true));
+    assertThat(notified(), is(true));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void manyWatchesShareOneWatchService() throws Exception {
+    // More than the default limit of 128 inotify instances per user.
+    File directory = null;
+    for (int i = 0; i < 200; i++) {
+      directory = folder.newFolder("watch" + i);
+      watch(directory, listener);
+    }
+    assertThat(new File(directory, "test.xml").createNewFile(), is(true));
+    assertThat(notified(), is(true));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void overlappingWatchesAreStoppedSeparately() throws Exception {
+    final Semaphore otherNotifications = new Semaphore(0);
+    FileWatcher.Handle handle = watch(folder.getRoot(), listener);
+    watch(folder.getRoot(), new FileWatcher.Listener() {
+      @Override
+      public void filesChanged() {
+        otherNotifications.release();
+      }
+    });
+    handle.close();
+    folder.newFile("test.xml");
+    assertThat(otherNotifications.tryAcquire(10, TimeUnit.SECONDS), is(true));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void stop() throws Exception {
+    FileWatcher.Handle handle = watch(folder.getRoot(), listener);
+    handle.close();
+    assertThat(handle.isAlive(null), is(false));
+
+    // The events of the directory are dispatched to every watch of it at once.
+    final Semaphore otherNotifications = new Semaphore(0);
+    watch(folder.getRoot(), new FileWatcher.Listener() {
+      @Override
+      public void filesChanged() {
+        otherNotifications.release();
+      }
+    });
+    folder.newFile("test.xml");
+    assertThat(otherNotifications.tryAcquire(10, TimeUnit.SECONDS), is(true));
+    assertThat(notifications.availablePermits(), is(0));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void failedWatchIsNotAlive() throws Exception {
+    FileWatcher.Handle handle = watch(folder.getRoot(), new FileWatcher.Listener() {
+      @Override
+      public void filesChanged() {
+        notifications.release();
+        throw new IllegalStateException();
+      }
+    });
+    assertThat(handle.isAlive(null), is(true));
+    folder.newFile("test.xml");
+    assertThat(notified(), is(true));
+    for (int i = 0; i < 100 && handle.isAlive(null); i++) {
+      Thread.sleep(100);
+    }
+    assertThat(handle.isAlive(null), is(false));
+  }
+
+  private FileWatcher.Handle watch(File directory, FileWatcher.Listener watchListener)
+      throws Exception {
+    FilesFoundTriggerConfig config = new FilesFoundTriggerConfig(null,
+        directory.getAbsolutePath(), "**/*.xml", "", "1");
+    FileWatcher.Handle handle = FileWatcher.watch(config, watchListener);
+    handles.add(handle);
+    handle.getStarted().get(10, TimeUnit.SECONDS);
+    return handle;
+  }
+
+  private boolean notified() throws InterruptedException {
+    return notifications.tryAcquire(10, TimeUnit.SECONDS);
+  }
+}
@@ -27,13 +27,20 @@ import static hudson.plugins.filesfoundtrigger.Support.IGNORED_FILES;
 import static hudson.plugins.filesfoundtrigger.Support.MASTER_NODE;
 import static hudson.plugins.filesfoundtrigger.Support.TRIGGER_NUMBER;
 import static hudson.util.FormValidation.Kind.OK;
+import static hudson.util.FormValidation.Kind.WARNING;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.powermock.api.mockito.PowerMockito.mock;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.hamcrest.CustomMatcher;
 import org.hamcrest.Matcher;
@@ -42,10 +49,16 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 import hudson.Util;
+import hudson.model.AutoCompletionCandidates;
+import hudson.model.Node;
 import hudson.model.Saveable;
 import hudson.slaves.EnvironmentVariablesNodeProperty;
 import hudson.slaves.NodeProperty;
@@ -69,13 +82,15 @@ public class FilesFoundTriggerConfigTest {
   @Rule
   public TemporaryFolder folder = new TemporaryFolder();
 
+  private Jenkins jenkins;
+
   private DescribableList<NodeProperty<?>, NodePropertyDescriptor> globalNodeProperties;
 
   /**
    */
   @Before
   public void setUp() {
-    Jenkins jenkins = mock(Jenkins.class);
+    jenkins = mock(Jenkins.class);
     globalNodeProperties = new DescribableList<NodeProperty<?>, NodePropertyDescriptor>(
         Saveable.NOOP);
     when(jenkins.getGlobalNodeProperties()).thenReturn(globalNodeProperties);
@@ -105,6 +120,188 @@ public class FilesFoundTriggerConfigTest {
     assertThat(formValidation, is(validation(OK, Messages.SingleFileFound("test"))));
   }
 
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void doTestConfigurationStillRunning() throws Exception {
+    folder.newFile("test");
+    int maxSearches = SearchThrottle.maxSearches;
+    int testTimeoutSeconds = FilesFoundTriggerConfig.DescriptorImpl.testTimeoutSeconds;
+    final CountDownLatch release = new CountDownLatch(1);
+    try {
+      // Occupy the master, so that the search waits.
+      SearchThrottle.maxSearches = 1;
+      SearchThrottle.submit(null, new Callable<Void>() {
+        @Override
+        public Void call() throws InterruptedException {
+          release.await();
+          return null;
+        }
+      });
+      FilesFoundTriggerConfig.DescriptorImpl.testTimeoutSeconds = 0;
+      FormValidation formValidation = new FilesFoundTriggerConfig.DescriptorImpl()
+          .doTestConfiguration(MASTER_NODE, folder.getRoot().getAbsolutePath(), "test",
+              IGNORED_FILES, TRIGGER_NUMBER);
+      assertThat(formValidation, is(validation(WARNING, Messages.TestStillRunning())));
+
+      release.countDown();
+      FilesFoundTriggerConfig.DescriptorImpl.testTimeoutSeconds = testTimeoutSeconds;
+      formValidation = new FilesFoundTriggerConfig.DescriptorImpl().doTestConfiguration(
+          MASTER_NODE, folder.getRoot().getAbsolutePath(), "test", IGNORED_FILES,
+          TRIGGER_NUMBER);
+      assertThat(formValidation, is(validation(OK, Messages.SingleFileFound("test"))));
+    } finally {
+      release.countDown();
+      SearchThrottle.maxSearches = maxSearches;
+      FilesFoundTriggerConfig.DescriptorImpl.testTimeoutSeconds = testTimeoutSeconds;
+    }
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void doTestConfigurationKeepsResultForNextTest() throws Exception {
+    folder.newFile("test");
+    int maxSearches = SearchThrottle.maxSearches;
+    int testTimeoutSeconds = FilesFoundTriggerConfig.DescriptorImpl.testTimeoutSeconds;
+    long freshnessMillis = SearchCoalescer.freshnessMillis;
+    final CountDownLatch release = new CountDownLatch(1);
+    try {
+      // Occupy the master, so that the search waits.
+      SearchThrottle.maxSearches = 1;
+      ListenableFuture<Void> blocking = SearchThrottle.submit(null, new Callable<Void>() {
+        @Override
+        public Void call() throws InterruptedException {
+          release.await();
+          return null;
+        }
+      });
+      SearchCoalescer.freshnessMillis = 0;
+      FilesFoundTriggerConfig.DescriptorImpl.testTimeoutSeconds = 0;
+      FormValidation formValidation = new FilesFoundTriggerConfig.DescriptorImpl()
+          .doTestConfiguration(MASTER_NODE, folder.getRoot().getAbsolutePath(), "*",
+              IGNORED_FILES, TRIGGER_NUMBER);
+      assertThat(formValidation, is(validation(WARNING, Messages.TestStillRunning())));
+
+      // The search completes long after its results would no longer be shared.
+      release.countDown();
+      blocking.get(10, TimeUnit.SECONDS);
+      for (int i = 0; i < 100 && SearchThrottle.getRunning("") > 0; i++) {
+        Thread.sleep(100);
+      }
+      folder.newFile("other");
+      FilesFoundTriggerConfig.DescriptorImpl.testTimeoutSeconds = testTimeoutSeconds;
+      formValidation = new FilesFoundTriggerConfig.DescriptorImpl().doTestConfiguration(
+          MASTER_NODE, folder.getRoot().getAbsolutePath(), "*", IGNORED_FILES,
+          TRIGGER_NUMBER);
+      assertThat(formValidation, is(validation(OK, Messages.SingleFileFound("test"))));
+
+      // Once picked up, the next test searches again.
+      formValidation = new FilesFoundTriggerConfig.DescriptorImpl().doTestConfiguration(
+          MASTER_NODE, folder.getRoot().getAbsolutePath(), "*", IGNORED_FILES,
+          TRIGGER_NUMBER);
+      assertThat(formValidation,
+          is(validation(OK, Messages.MultipleFilesFound(Integer.valueOf(2)))));
+    } finally {
+      release.countDown();
+      SearchThrottle.maxSearches = maxSearches;
+      SearchCoalescer.freshnessMillis = freshnessMillis;
+      FilesFoundTriggerConfig.DescriptorImpl.testTimeoutSeconds = testTimeoutSeconds;
+    }
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void doTestConfigurationRejected() throws Exception {
+    int maxSearches = SearchThrottle.maxSearches;
+    final CountDownLatch release = new CountDownLatch(1);
+    Callable<Void> blockingTask = new Callable<Void>() {
+      @Override
+      public Void call() throws InterruptedException {
+        release.await();
+        return null;
+      }
+    };
+    try {
+      // Fill the threads and the queue of the executor.
+      SearchThrottle.maxSearches = 0;
+      for (int i = 0; i < SearchExecutor.POOL_SIZE + SearchExecutor.QUEUE_SIZE; i++) {
+        SearchExecutor.submit(blockingTask);
+      }
+      FormValidation formValidation = new FilesFoundTriggerConfig.DescriptorImpl()
+          .doTestConfiguration(MASTER_NODE, folder.getRoot().getAbsolutePath(), "rejected",
+              IGNORED_FILES, TRIGGER_NUMBER);
+      assertThat(formValidation, is(validation(WARNING, Messages.TestRejected())));
+    } finally {
+      release.countDown();
+      SearchThrottle.maxSearches = maxSearches;
+    }
+  }
+
+  /**
+   */
+  @Test
+  public void doFillNodeItems() {
+    defineNodes("slave1", "slave2");
+    assertThat(new FilesFoundTriggerConfig.DescriptorImpl().doFillNodeItems(),
+        is(Arrays.asList("master", "slave1", "slave2")));
+  }
+
+  /**
+   */
+  @Test
+  public void doAutoCompleteNode() {
+    defineNodes("linux1", "Linux2", "windows1");
+    AutoCompletionCandidates candidates = new FilesFoundTriggerConfig.DescriptorImpl()
+        .doAutoCompleteNode("lin");
+    assertThat(candidates.getValues(), is(Arrays.asList("linux1", "Linux2")));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void nodeNamesReadDuringChangeAreDiscarded() throws Exception {
+    defineNodes("slave1");
+    final List<Node> nodes = jenkins.getNodes();
+    final Thread change = new Thread() {
+      @Override
+      public void run() {
+        new NodeNames.Listener().onConfigurationChange();
+      }
+    };
+    when(jenkins.getNodes()).thenAnswer(new Answer<List<Node>>() {
+      @Override
+      public List<Node> answer(InvocationOnMock invocation) throws InterruptedException {
+        if (change.getState() == Thread.State.NEW) {
+          // The nodes change while they are being read.
+          change.start();
+          change.join(500);
+        }
+        return nodes;
+      }
+    });
+    new FilesFoundTriggerConfig.DescriptorImpl().doFillNodeItems();
+    change.join();
+    defineNodes("slave2");
+    assertThat(new FilesFoundTriggerConfig.DescriptorImpl().doFillNodeItems(),
+        is(Arrays.asList("master", "slave2")));
+  }
+
+  private void defineNodes(String... names) {
+    List<Node> nodes = new ArrayList<Node>();
+    for (String name : names) {
+      Node node = mock(Node.class);
+      when(node.getNodeName()).thenReturn(name);
+      nodes.add(node);
+    }
+    when(jenkins.getNodes()).thenReturn(nodes);
+  }
+
   private void defineGlobalProperty(String name, String value) {
     EnvironmentVariablesNodeProperty.Entry entry = new EnvironmentVariablesNodeProperty.Entry(name,
         value);
@@ -32,14 +32,20 @@ import static hudson.plugins.filesfoundtrigger.Support.SPEC;
 import static hudson.plugins.filesfoundtrigger.Support.TRIGGER_NUMBER;
 import static java.util.Collections.singletonList;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -47,27 +53,38 @@ import static org.powermock.api.mockito.PowerMockito.when;
 import java.lang.reflect.Field;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import antlr.ANTLRException;
+import hudson.model.AbstractProject;
 import hudson.model.BuildableItem;
 import hudson.model.Cause;
+import hudson.model.Node;
+import hudson.model.Queue;
 import hudson.model.Saveable;
+import hudson.remoting.Callable;
+import hudson.remoting.VirtualChannel;
 import hudson.slaves.EnvironmentVariablesNodeProperty;
 import hudson.slaves.NodeProperty;
 import hudson.slaves.NodePropertyDescriptor;
 import hudson.util.DescribableList;
 import hudson.util.XStream2;
 import jenkins.model.Jenkins;
+import jenkins.util.Timer;
 
 /**
  * Unit test for the {@link FilesFoundTrigger} class.
@@ -75,7 +92,7 @@ import jenkins.model.Jenkins;
  * @author Steven G. Brown
  */
 @RunWith(PowerMockRunner.class)
-@PrepareForTest(Jenkins.class)
+@PrepareForTest({ Jenkins.class, Timer.class })
 @SuppressWarnings("boxing")
 public class FilesFoundTriggerTest {
 
@@ -149,16 +166,22 @@ public class FilesFoundTriggerTest {
 
   private DescribableList<NodeProperty<?>, NodePropertyDescriptor> globalNodeProperties;
 
+  private Jenkins jenkins;
+
   private BuildableItem job;
 
+  private Queue queue;
+
   /**
    */
   @Before
   public void setUp() {
-    Jenkins jenkins = mock(Jenkins.class);
+    jenkins = mock(Jenkins.class);
     globalNodeProperties = new DescribableList<NodeProperty<?>, NodePropertyDescriptor>(
         Saveable.NOOP);
     when(jenkins.getGlobalNodeProperties()).thenReturn(globalNodeProperties);
+    queue = mock(Queue.class);
+    when(jenkins.getQueue()).thenReturn(queue);
     mockStatic(Jenkins.class);
     when(Jenkins.getInstance()).thenReturn(jenkins);
 
@@ -191,18 +214,135 @@ public class FilesFoundTriggerTest {
   /**
    */
   @Test
-  public void runAndScheduleBuild() {
+  public void getConfigsIsNotRebuilt() {
+    FilesFoundTrigger trigger = trigger(SPEC, masterConfig());
+    assertThat(trigger.getConfigs(), is(sameInstance(trigger.getConfigs())));
+  }
+
+  /**
+   */
+  @Test
+  public void getExpandedConfigsIsReusedForSameVariables() {
+    defineGlobalProperty("directory", DIRECTORY);
+    FilesFoundTrigger trigger = trigger(SPEC,
+        new FilesFoundTriggerConfig(MASTER_NODE, "$directory", FILES, IGNORED_FILES,
+            TRIGGER_NUMBER));
+    List<FilesFoundTriggerConfig> expandedConfigs = trigger.getExpandedConfigs();
+    assertThat(expandedConfigs.get(0).getDirectory(), is(DIRECTORY));
+    assertThat(trigger.getExpandedConfigs(), is(sameInstance(expandedConfigs)));
+  }
+
+  /**
+   */
+  @Test
+  public void getExpandedConfigsIsRebuiltWhenVariablesChange() {
+    defineGlobalProperty("directory", DIRECTORY);
+    FilesFoundTrigger trigger = trigger(SPEC,
+        new FilesFoundTriggerConfig(MASTER_NODE, "$directory", FILES, IGNORED_FILES,
+            TRIGGER_NUMBER));
+    List<FilesFoundTriggerConfig> expandedConfigs = trigger.getExpandedConfigs();
+    defineGlobalProperty("directory", "D:/");
+    new ExpansionEnvironment.SaveListener().onChange(jenkins, null);
+    assertThat(trigger.getExpandedConfigs(), is(not(sameInstance(expandedConfigs))));
+    assertThat(trigger.getExpandedConfigs().get(0).getDirectory(), is("D:/"));
+  }
+
+  /**
+   */
+  @Test
+  public void pollOffsetIsStable() {
+    FilesFoundTrigger trigger = trigger(SPEC, masterConfig());
+    trigger.start(job, true);
+    long offset = trigger.pollOffsetMillis();
+    assertThat(trigger.pollOffsetMillis(), is(offset));
+    assertThat(offset, is(lessThan(TimeUnit.SECONDS.toMillis(FilesFoundTrigger.spreadSeconds))));
+  }
+
+  /**
+   */
+  @Test
+  public void pollOffsetDiffersBetweenJobs() {
+    FilesFoundTrigger trigger = trigger(SPEC, masterConfig());
+    trigger.start(job, true);
+    BuildableItem otherJob = mock(BuildableItem.class);
+    when(otherJob.getFullName()).thenReturn("other");
+    FilesFoundTrigger otherTrigger = trigger(SPEC, masterConfig());
+    otherTrigger.start(otherJob, true);
+    assertThat(otherTrigger.pollOffsetMillis(), is(not(trigger.pollOffsetMillis())));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void runDelaysPoll() throws Exception {
+    ScheduledExecutorService timer = mockTimer();
     FilesFoundTriggerConfig config = foundConfig();
     FilesFoundTrigger trigger = trigger(SPEC, config);
     trigger.start(job, true);
+    long offset = trigger.pollOffsetMillis();
+    assertThat(offset, is(not(0L)));
     trigger.run();
+    ArgumentCaptor<Runnable> poll = ArgumentCaptor.forClass(Runnable.class);
+    verify(timer).schedule(poll.capture(), eq(offset), eq(TimeUnit.MILLISECONDS));
+    verify(job, never()).scheduleBuild(anyInt(), any(Cause.class));
+    poll.getValue().run();
+    verify(job, timeout(10000)).scheduleBuild(0, new FilesFoundTriggerCause(config));
+  }
+
+  /**
+   */
+  @Test
+  public void stopCancelsDelayedPoll() {
+    ScheduledExecutorService timer = mockTimer();
+    ScheduledFuture<?> delayedPoll = mock(ScheduledFuture.class);
+    doReturn(delayedPoll).when(timer).schedule(any(Runnable.class), anyLong(),
+        any(TimeUnit.class));
+    FilesFoundTrigger trigger = trigger(SPEC, foundConfig());
+    trigger.start(job, true);
+    trigger.run();
+    trigger.stop();
+    verify(delayedPoll).cancel(false);
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void runAndScheduleBuild() throws Exception {
+    FilesFoundTriggerConfig config = foundConfig();
+    FilesFoundTrigger trigger = trigger(SPEC, config);
+    trigger.start(job, true);
+    trigger.poll().get();
     verify(job, times(1)).scheduleBuild(0, new FilesFoundTriggerCause(config));
   }
 
   /**
+   * @throws Exception
    */
   @Test
-  public void runAndScheduleBuildWithProperties() {
+  public void runAndScheduleBuildWithoutSearchingWhenTriggerNumberIsZero() throws Exception {
+    VirtualChannel channel = mock(VirtualChannel.class);
+    Node slave = mock(Node.class);
+    when(slave.getChannel()).thenReturn(channel);
+    when(jenkins.getNode(SLAVE_NODE)).thenReturn(slave);
+    FilesFoundTriggerConfig config = new FilesFoundTriggerConfig(SLAVE_NODE,
+        folder.getRoot().getAbsolutePath(), FILES, IGNORED_FILES, "0");
+    FilesFoundTrigger trigger = trigger(SPEC, config);
+    trigger.start(job, true);
+    ListenableFuture<Boolean> poll = trigger.poll();
+    assertThat(poll.isDone(), is(true));
+    assertThat(poll.get(), is(true));
+    verify(job, times(1)).scheduleBuild(0, new FilesFoundTriggerCause(config));
+    assertThat(SearchBatcher.flush(SLAVE_NODE).get(), is(0));
+    verify(channel, never()).callAsync(any(Callable.class));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void runAndScheduleBuildWithProperties() throws Exception {
     FilesFoundTriggerConfig expandedConfig = foundConfig();
     defineGlobalProperty("node", "master");
     defineGlobalProperty("directory", expandedConfig.getDirectory());
@@ -213,28 +353,98 @@ public class FilesFoundTriggerTest {
         "$ignoredFiles", "$triggerNumber");
     FilesFoundTrigger trigger = trigger(SPEC, config);
     trigger.start(job, true);
-    trigger.run();
+    trigger.poll().get();
     verify(job, times(1)).scheduleBuild(0, new FilesFoundTriggerCause(expandedConfig));
   }
 
   /**
+   * @throws Exception
    */
   @Test
-  public void runAndDontScheduleBuild() {
+  @SuppressWarnings("unchecked")
+  public void runAndScheduleBuildWithFirstConfigToFindFiles() throws Exception {
+    VirtualChannel channel = mock(VirtualChannel.class);
+    Node slave = mock(Node.class);
+    when(slave.getChannel()).thenReturn(channel);
+    when(jenkins.getNode(SLAVE_NODE)).thenReturn(slave);
+    FilesFoundTriggerConfig masterConfig = foundConfig();
+    FilesFoundTriggerConfig slaveConfig = new FilesFoundTriggerConfig(SLAVE_NODE,
+        masterConfig.getDirectory(), FILES, IGNORED_FILES, TRIGGER_NUMBER);
+    FilesFoundTrigger trigger = trigger(SPEC, slaveConfig, masterConfig);
+    long defaultDelayMillis = SearchBatcher.delayMillis;
+    SearchBatcher.delayMillis = TimeUnit.HOURS.toMillis(1);
+    try {
+      trigger.start(job, true);
+      assertThat(trigger.poll().get(), is(true));
+      verify(job, times(1)).scheduleBuild(0, new FilesFoundTriggerCause(masterConfig));
+
+      // The search of the slave is cancelled before it is sent.
+      assertThat(SearchBatcher.flush(SLAVE_NODE).get(), is(0));
+      verify(channel, never()).callAsync(any(Callable.class));
+      verify(job, times(1)).scheduleBuild(anyInt(), any(Cause.class));
+    } finally {
+      SearchBatcher.delayMillis = defaultDelayMillis;
+    }
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void runAndDontScheduleBuild() throws Exception {
     FilesFoundTriggerConfig config = notFoundConfig();
     FilesFoundTrigger trigger = trigger(SPEC, config);
     trigger.start(job, true);
-    trigger.run();
+    trigger.poll().get();
+    verify(job, never()).scheduleBuild(anyInt(), any(Cause.class));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void runSkippedWhenBuildIsQueued() throws Exception {
+    when(queue.contains(job)).thenReturn(true);
+    FilesFoundTrigger trigger = trigger(SPEC, foundConfig());
+    trigger.start(job, true);
+    assertThat(trigger.poll().get(), is(false));
     verify(job, never()).scheduleBuild(anyInt(), any(Cause.class));
   }
 
   /**
+   * @throws Exception
    */
   @Test
-  public void runWithNoConfigs() {
+  public void runSkippedWhenJobIsDisabled() throws Exception {
+    AbstractProject<?, ?> project = mock(AbstractProject.class);
+    when(project.isDisabled()).thenReturn(true);
+    FilesFoundTrigger trigger = trigger(SPEC, foundConfig());
+    trigger.start(project, true);
+    assertThat(trigger.poll().get(), is(false));
+    verify(project, never()).scheduleBuild(anyInt(), any(Cause.class));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void runSkippedWhenBuildIsRunning() throws Exception {
+    AbstractProject<?, ?> project = mock(AbstractProject.class);
+    when(project.isBuilding()).thenReturn(true);
+    FilesFoundTrigger trigger = trigger(SPEC, foundConfig());
+    trigger.start(project, true);
+    assertThat(trigger.poll().get(), is(false));
+    verify(project, never()).scheduleBuild(anyInt(), any(Cause.class));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void runWithNoConfigs() throws Exception {
     FilesFoundTrigger trigger = trigger(SPEC);
     trigger.start(job, true);
-    trigger.run();
+    trigger.poll().get();
     verify(job, never()).scheduleBuild(anyInt(), any(Cause.class));
   }
 
@@ -435,6 +645,18 @@ public class FilesFoundTriggerTest {
     }
   }
 
+  /**
+   * Replace the executor of {@link Timer} with a mock.
+   * 
+   * @return the mock executor
+   */
+  private static ScheduledExecutorService mockTimer() {
+    ScheduledExecutorService timer = mock(ScheduledExecutorService.class);
+    mockStatic(Timer.class);
+    when(Timer.get()).thenReturn(timer);
+    return timer;
+  }
+
   /**
    * Define a global property.
    * 
@@ -0,0 +1,160 @@
+/*
+ * The MIT License
+ * 
+ * Copyright (c) 2017 Steven G. Brown
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import static hudson.plugins.filesfoundtrigger.Support.SLAVE_NODE;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.remoting.VirtualChannel;
+import jenkins.model.Jenkins;
+
+/**
+ * Unit test for the {@link NodeChannels} class.
+ * 
+ * @author Steven G. Brown
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Jenkins.class)
+@SuppressWarnings("boxing")
+public class NodeChannelsTest {
+
+  private Jenkins jenkins;
+
+  private Node node;
+
+  private VirtualChannel channel;
+
+  /**
+   */
+  @Before
+  public void setUp() {
+    channel = mock(VirtualChannel.class);
+    node = mock(Node.class);
+    when(node.getChannel()).thenReturn(channel);
+    jenkins = mock(Jenkins.class);
+    when(jenkins.getNode(SLAVE_NODE)).thenReturn(node);
+    mockStatic(Jenkins.class);
+    when(Jenkins.getInstance()).thenReturn(jenkins);
+  }
+
+  /**
+   */
+  @Test
+  public void channelIsCached() {
+    assertThat(NodeChannels.channel(SLAVE_NODE), is(sameInstance(channel)));
+    assertThat(NodeChannels.channel(SLAVE_NODE), is(sameInstance(channel)));
+    verify(jenkins, times(1)).getNode(SLAVE_NODE);
+  }
+
+  /**
+   */
+  @Test
+  public void nodeNotFound() {
+    NodeChannels.State state = NodeChannels.lookup("missing");
+    assertThat(state.exists, is(false));
+  }
+
+  /**
+   */
+  @Test
+  public void nodeNotFoundIsNotCached() {
+    NodeChannels.lookup("missing");
+    NodeChannels.lookup("missing");
+    verify(jenkins, times(2)).getNode("missing");
+  }
+
+  /**
+   */
+  @Test
+  public void nodeGoingOnlineDuringLookupIsNotCached() {
+    final Computer computer = mock(Computer.class);
+    when(computer.getName()).thenReturn(SLAVE_NODE);
+    when(node.getChannel()).thenAnswer(new Answer<VirtualChannel>() {
+      private boolean online;
+
+      @Override
+      public VirtualChannel answer(InvocationOnMock invocation) {
+        if (online) {
+          return channel;
+        }
+        // The slave comes online after its channel has been read.
+        online = true;
+        new NodeChannels.Listener().onOnline(computer, null);
+        return null;
+      }
+    });
+    assertThat(NodeChannels.lookup(SLAVE_NODE).channel == null, is(true));
+    assertThat(NodeChannels.channel(SLAVE_NODE), is(sameInstance(channel)));
+  }
+
+  /**
+   */
+  @Test
+  public void nodeOffline() {
+    when(node.getChannel()).thenReturn(null);
+    NodeChannels.State state = NodeChannels.lookup(SLAVE_NODE);
+    assertThat(state.exists, is(true));
+    assertThat(state.channel == null, is(true));
+  }
+
+  /**
+   */
+  @Test
+  public void cacheIsUpdatedWhenNodeGoesOffline() {
+    NodeChannels.channel(SLAVE_NODE);
+    when(node.getChannel()).thenReturn(null);
+    Computer computer = mock(Computer.class);
+    when(computer.getName()).thenReturn(SLAVE_NODE);
+    new NodeChannels.Listener().onOffline(computer);
+    assertThat(NodeChannels.lookup(SLAVE_NODE).channel == null, is(true));
+  }
+
+  /**
+   */
+  @Test
+  public void cacheIsClearedWhenNodesChange() {
+    NodeChannels.lookup("added");
+    Node added = mock(Node.class);
+    when(jenkins.getNode("added")).thenReturn(added);
+    new NodeChannels.Listener().onConfigurationChange();
+    assertThat(NodeChannels.lookup("added").exists, is(true));
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ * 
+ * Copyright (c) 2017 Steven G. Brown
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link PollingBackoff} class.
+ * 
+ * @author Steven G. Brown
+ */
+@SuppressWarnings("boxing")
+public class PollingBackoffTest {
+
+  private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+  private static final long CEILING = 5 * MINUTE;
+
+  /**
+   */
+  @Test
+  public void firstSearchIsDue() {
+    assertThat(new PollingBackoff().isDue(0), is(true));
+  }
+
+  /**
+   */
+  @Test
+  public void intervalDoublesWhileNoFilesAreFound() {
+    PollingBackoff backoff = new PollingBackoff();
+    backoff.searched(0, false, CEILING);
+    assertThat(backoff.getNextSearch(), is(MINUTE));
+    backoff.searched(0, false, CEILING);
+    assertThat(backoff.getNextSearch(), is(2 * MINUTE));
+    backoff.searched(0, false, CEILING);
+    assertThat(backoff.getNextSearch(), is(4 * MINUTE));
+    assertThat(backoff.getMisses(), is(3));
+  }
+
+  /**
+   */
+  @Test
+  public void intervalIsLimitedByCeiling() {
+    PollingBackoff backoff = new PollingBackoff();
+    for (int i = 0; i < 100; i++) {
+      backoff.searched(0, false, CEILING);
+    }
+    assertThat(backoff.getNextSearch(), is(CEILING));
+  }
+
+  /**
+   */
+  @Test
+  public void searchIsSkippedUntilDue() {
+    PollingBackoff backoff = new PollingBackoff();
+    backoff.searched(0, false, CEILING);
+    backoff.searched(0, false, CEILING);
+    assertThat(backoff.isDue(MINUTE), is(false));
+    assertThat(backoff.isDue(2 * MINUTE), is(true));
+  }
+
+  /**
+   */
+  @Test
+  public void cronTickShortlyBeforeNextSearchIsDue() {
+    PollingBackoff backoff = new PollingBackoff();
+    backoff.searched(0, false, CEILING);
+    assertThat(backoff.isDue(MINUTE - TimeUnit.SECONDS.toMillis(5)), is(true));
+  }
+
+  /**
+   */
+  @Test
+  public void filesFoundResetsInterval() {
+    PollingBackoff backoff = new PollingBackoff();
+    backoff.searched(0, false, CEILING);
+    backoff.searched(0, false, CEILING);
+    backoff.searched(0, true, CEILING);
+    assertThat(backoff.getMisses(), is(0));
+    assertThat(backoff.isDue(0), is(true));
+  }
+
+  /**
+   */
+  @Test
+  public void reset() {
+    PollingBackoff backoff = new PollingBackoff();
+    backoff.searched(0, false, CEILING);
+    backoff.searched(0, false, CEILING);
+    backoff.reset();
+    assertThat(backoff.getMisses(), is(0));
+    assertThat(backoff.isDue(0), is(true));
+  }
+}
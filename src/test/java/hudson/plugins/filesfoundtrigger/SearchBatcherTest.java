@@ -0,0 +1,204 @@
+/*
+ * The MIT License
+ * 
+ * Copyright (c) 2017 Steven G. Brown
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import static hudson.plugins.filesfoundtrigger.Support.FILES;
+import static hudson.plugins.filesfoundtrigger.Support.IGNORED_FILES;
+import static hudson.plugins.filesfoundtrigger.Support.SLAVE_NODE;
+import static hudson.plugins.filesfoundtrigger.Support.TRIGGER_NUMBER;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import hudson.model.Node;
+import hudson.remoting.AsyncFutureImpl;
+import hudson.remoting.Callable;
+import hudson.remoting.Future;
+import hudson.remoting.VirtualChannel;
+import hudson.util.FormValidation;
+import jenkins.model.Jenkins;
+
+/**
+ * Unit test for the {@link SearchBatcher} class.
+ * 
+ * @author Steven G. Brown
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Jenkins.class)
+@SuppressWarnings("boxing")
+public class SearchBatcherTest {
+
+  /**
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private VirtualChannel channel;
+
+  private long defaultDelayMillis;
+
+  /**
+   * @throws Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    channel = mock(VirtualChannel.class);
+    when(channel.callAsync(any(Callable.class))).thenAnswer(new Answer<Future<?>>() {
+      @Override
+      public Future<?> answer(InvocationOnMock invocation) throws Throwable {
+        return new AsyncFutureImpl<Object>(
+            ((Callable<?, ?>) invocation.getArguments()[0]).call());
+      }
+    });
+    Node node = mock(Node.class);
+    when(node.getChannel()).thenReturn(channel);
+    Jenkins jenkins = mock(Jenkins.class);
+    when(jenkins.getNode(SLAVE_NODE)).thenReturn(node);
+    mockStatic(Jenkins.class);
+    when(Jenkins.getInstance()).thenReturn(jenkins);
+
+    defaultDelayMillis = SearchBatcher.delayMillis;
+    SearchBatcher.delayMillis = 100;
+  }
+
+  /**
+   */
+  @After
+  public void tearDown() {
+    SearchBatcher.delayMillis = defaultDelayMillis;
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void searchesOfOneSlaveShareOneCall() throws Exception {
+    folder.newFolder("a");
+    folder.newFile("a/test");
+    ListenableFuture<FileSearch.Result> first = FileSearch.performAsync(config("a"), 1);
+    ListenableFuture<FileSearch.Result> second = FileSearch.performAsync(config("b"), 1);
+    assertThat(first.get().count, is(1));
+    assertThat(second.get().formValidation.kind, is(FormValidation.Kind.WARNING));
+    verify(channel, times(1)).callAsync(any(Callable.class));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void channelFailureIsReportedForEachSearch() throws Exception {
+    when(channel.callAsync(any(Callable.class))).thenThrow(new IOException("closed"));
+    ListenableFuture<FileSearch.Result> first = FileSearch.performAsync(config("a"), 1);
+    ListenableFuture<FileSearch.Result> second = FileSearch.performAsync(config("b"), 1);
+    assertThat(failed(first), is(true));
+    assertThat(failed(second), is(true));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void unresponsiveSlaveIsCancelled() throws Exception {
+    Future<?> call = mock(Future.class);
+    when(call.get(anyLong(), any(TimeUnit.class))).thenThrow(new TimeoutException());
+    when(channel.callAsync(any(Callable.class))).thenReturn(call);
+    ListenableFuture<FileSearch.Result> search = FileSearch.performAsync(config("a"), 1);
+    try {
+      search.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), is(instanceOf(IOException.class)));
+    }
+    verify(call).cancel(true);
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void failedSearchDoesNotAffectOtherSearchesOfTheBatch() throws Exception {
+    folder.newFolder("a");
+    folder.newFile("a/test");
+    FileSearch.Scan failing = new FileSearch.Scan(config("b"), 1, FileSearch.SAMPLE_SIZE) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      FileSearch.Matches perform(File directory) {
+        throw new SecurityException("denied");
+      }
+    };
+    ListenableFuture<FileSearch.Result> first = FileSearch.performAsync(config("a"), 1);
+    ListenableFuture<FileSearch.Result> second = SearchBatcher.submit(config("b"), failing);
+    assertThat(first.get().count, is(1));
+    try {
+      second.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), is(instanceOf(SecurityException.class)));
+    }
+    verify(channel, times(1)).callAsync(any(Callable.class));
+  }
+
+  private FilesFoundTriggerConfig config(String directory) {
+    return new FilesFoundTriggerConfig(SLAVE_NODE,
+        folder.getRoot().getAbsolutePath() + "/" + directory, FILES, IGNORED_FILES,
+        TRIGGER_NUMBER);
+  }
+
+  private static boolean failed(ListenableFuture<?> future) throws InterruptedException {
+    try {
+      future.get();
+      return false;
+    } catch (ExecutionException e) {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ * 
+ * Copyright (c) 2017 Steven G. Brown
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import static hudson.plugins.filesfoundtrigger.Support.FILES;
+import static hudson.plugins.filesfoundtrigger.Support.IGNORED_FILES;
+import static hudson.plugins.filesfoundtrigger.Support.MASTER_NODE;
+import static hudson.plugins.filesfoundtrigger.Support.TRIGGER_NUMBER;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Unit test for the {@link SearchCoalescer} class.
+ * 
+ * @author Steven G. Brown
+ */
+public class SearchCoalescerTest {
+
+  /**
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void identicalSearchesAreShared() throws Exception {
+    ListenableFuture<FileSearch.Result> first = SearchCoalescer.search(config(folder.getRoot()), 1);
+    ListenableFuture<FileSearch.Result> second = SearchCoalescer.search(config(folder.getRoot()),
+        1);
+    assertThat(second, is(sameInstance(first)));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void completedSearchIsShared() throws Exception {
+    ListenableFuture<FileSearch.Result> first = SearchCoalescer.search(config(folder.getRoot()), 1);
+    first.get();
+    ListenableFuture<FileSearch.Result> second = SearchCoalescer.search(config(folder.getRoot()),
+        1);
+    assertThat(second, is(sameInstance(first)));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void differentSearchesAreNotShared() throws Exception {
+    ListenableFuture<FileSearch.Result> first = SearchCoalescer.search(config(folder.getRoot()), 1);
+    ListenableFuture<FileSearch.Result> second = SearchCoalescer
+        .search(config(folder.newFolder()), 1);
+    assertThat(second, is(not(sameInstance(first))));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void searchIsCancelledWhenNoTriggerIsWaiting() throws Exception {
+    int maxSearches = SearchThrottle.maxSearches;
+    final CountDownLatch release = new CountDownLatch(1);
+    try {
+      // Occupy the master, so that the search waits.
+      SearchThrottle.maxSearches = 1;
+      SearchThrottle.submit(null, new Callable<Void>() {
+        @Override
+        public Void call() throws InterruptedException {
+          release.await();
+          return null;
+        }
+      });
+      FilesFoundTriggerConfig config = config(folder.getRoot());
+      ListenableFuture<FileSearch.Result> first = SearchCoalescer.search(config, 1);
+      ListenableFuture<FileSearch.Result> second = SearchCoalescer.search(config, 1);
+      SearchCoalescer.cancel(config, 1, first);
+      assertThat(first.isCancelled(), is(false));
+      SearchCoalescer.cancel(config, 1, second);
+      assertThat(first.isCancelled(), is(true));
+    } finally {
+      release.countDown();
+      SearchThrottle.maxSearches = maxSearches;
+    }
+  }
+
+  private static FilesFoundTriggerConfig config(File directory) {
+    return new FilesFoundTriggerConfig(MASTER_NODE, directory.getAbsolutePath(), FILES,
+        IGNORED_FILES, TRIGGER_NUMBER);
+  }
+}
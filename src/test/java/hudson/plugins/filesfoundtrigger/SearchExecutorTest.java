@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ * 
+ * Copyright (c) 2017 Steven G. Brown
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Unit test for the {@link SearchExecutor} class.
+ * 
+ * @author Steven G. Brown
+ */
+public class SearchExecutorTest {
+
+  private ListeningExecutorService executor;
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private final Callable<String> task = new Callable<String>() {
+    @Override
+    public String call() throws InterruptedException {
+      release.await();
+      return "done";
+    }
+  };
+
+  /**
+   */
+  @Before
+  public void setUp() {
+    executor = SearchExecutor.create(1, 1);
+  }
+
+  /**
+   */
+  @After
+  public void tearDown() {
+    release.countDown();
+    executor.shutdown();
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void taskIsPerformed() throws Exception {
+    ListenableFuture<String> future = SearchExecutor.submit(executor, task);
+    release.countDown();
+    assertThat(future.get(), is("done"));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void taskIsRejectedWhenQueueIsFull() throws Exception {
+    ListenableFuture<String> running = SearchExecutor.submit(executor, task);
+    ListenableFuture<String> queued = SearchExecutor.submit(executor, task);
+    ListenableFuture<String> rejected = SearchExecutor.submit(executor, task);
+    release.countDown();
+    assertThat(running.get(), is("done"));
+    assertThat(queued.get(), is("done"));
+    try {
+      rejected.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), is(instanceOf(RejectedExecutionException.class)));
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * The MIT License
+ * 
+ * Copyright (c) 2017 Steven G. Brown
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.filesfoundtrigger;
+
+import static hudson.plugins.filesfoundtrigger.Support.SLAVE_NODE;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import hudson.model.Node;
+import jenkins.model.Jenkins;
+
+/**
+ * Unit test for the {@link SearchThrottle} class.
+ * 
+ * @author Steven G. Brown
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Jenkins.class)
+@SuppressWarnings("boxing")
+public class SearchThrottleTest {
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private final Callable<String> blockingTask = new Callable<String>() {
+    @Override
+    public String call() throws InterruptedException {
+      release.await();
+      return "blocking";
+    }
+  };
+
+  private final Callable<String> task = new Callable<String>() {
+    @Override
+    public String call() {
+      return "done";
+    }
+  };
+
+  /**
+   */
+  @After
+  public void tearDown() {
+    release.countDown();
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void searchWaitsForRunningSearch() throws Exception {
+    ListenableFuture<String> running = SearchThrottle.submit("waits", 1, blockingTask);
+    ListenableFuture<String> waiting = SearchThrottle.submit("waits", 1, task);
+    assertThat(SearchThrottle.getRunning("waits"), is(1));
+    assertThat(SearchThrottle.getWaiting("waits"), is(1));
+    assertThat(waiting.isDone(), is(false));
+    release.countDown();
+    assertThat(running.get(), is("blocking"));
+    assertThat(waiting.get(), is("done"));
+    assertThat(SearchThrottle.getWaiting("waits"), is(0));
+    assertThat(SearchThrottle.getRunning("waits"), is(0));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void otherNodesAreNotLimited() throws Exception {
+    SearchThrottle.submit("busy", 1, blockingTask);
+    ListenableFuture<String> other = SearchThrottle.submit("other", 1, task);
+    assertThat(other.get(10, TimeUnit.SECONDS), is("done"));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void zeroIsUnlimited() throws Exception {
+    SearchThrottle.submit("unlimited", 0, blockingTask);
+    ListenableFuture<String> other = SearchThrottle.submit("unlimited", 0, task);
+    assertThat(other.get(10, TimeUnit.SECONDS), is("done"));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void cancelledSearchIsNotPerformed() throws Exception {
+    SearchThrottle.submit("cancelled", 1, blockingTask);
+    final AtomicBoolean performed = new AtomicBoolean();
+    ListenableFuture<String> cancelled = SearchThrottle.submit("cancelled", 1,
+        new Callable<String>() {
+          @Override
+          public String call() {
+            performed.set(true);
+            return "cancelled";
+          }
+        });
+    cancelled.cancel(false);
+    release.countDown();
+    ListenableFuture<String> next = SearchThrottle.submit("cancelled", 1, task);
+    assertThat(next.get(10, TimeUnit.SECONDS), is("done"));
+    assertThat(performed.get(), is(false));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void manyCancelledSearchesAreSkipped() throws Exception {
+    ListenableFuture<String> running = SearchThrottle.submit("skipped", 1, blockingTask);
+    for (int i = 0; i < 100000; i++) {
+      SearchThrottle.submit("skipped", 1, task).cancel(false);
+    }
+    ListenableFuture<String> waiting = SearchThrottle.submit("skipped", 1, task);
+    release.countDown();
+    assertThat(running.get(), is("blocking"));
+    assertThat(waiting.get(10, TimeUnit.SECONDS), is("done"));
+    assertThat(SearchThrottle.getRunning("skipped"), is(0));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void blockedSlavesDoNotHoldUpTheMaster() throws Exception {
+    // Two slaves that do not respond, each with two running searches.
+    for (int i = 0; i < 2; i++) {
+      SearchThrottle.submit("blocked1", 2, blockingTask);
+      SearchThrottle.submit("blocked2", 2, blockingTask);
+    }
+    ListenableFuture<String> master = SearchThrottle.submit("", 1, task);
+    assertThat(master.get(10, TimeUnit.SECONDS), is("done"));
+  }
+
+  /**
+   */
+  @Test
+  public void limitIsReadFromNodePropertyOnce() {
+    Jenkins jenkins = defineNode(new SearchLimitNodeProperty("5"));
+    assertThat(SearchThrottle.limit(SLAVE_NODE), is(5));
+    assertThat(SearchThrottle.limit(SLAVE_NODE), is(5));
+    verify(jenkins, times(1)).getNode(SLAVE_NODE);
+  }
+
+  /**
+   */
+  @Test
+  public void limitIsReadAgainWhenNodesChange() {
+    Jenkins jenkins = defineNode(new SearchLimitNodeProperty("5"));
+    SearchThrottle.limit(SLAVE_NODE);
+    Node node = jenkins.getNode(SLAVE_NODE);
+    when(node.getNodeProperty(SearchLimitNodeProperty.class)).thenReturn(null);
+    new SearchThrottle.NodeListener().onConfigurationChange();
+    assertThat(SearchThrottle.limit(SLAVE_NODE), is(SearchThrottle.maxSearches));
+  }
+
+  /**
+   */
+  @Test
+  public void masterLimitIsReadAgainWhenGlobalConfigurationIsSaved() {
+    Jenkins jenkins = defineNode(null);
+    when(jenkins.getNodeProperty(SearchLimitNodeProperty.class))
+        .thenReturn(new SearchLimitNodeProperty("5"));
+    assertThat(SearchThrottle.limit(null), is(5));
+    when(jenkins.getNodeProperty(SearchLimitNodeProperty.class)).thenReturn(null);
+    new SearchThrottle.SaveListener().onChange(jenkins, null);
+    assertThat(SearchThrottle.limit(null), is(SearchThrottle.maxSearches));
+  }
+
+  private static Jenkins defineNode(SearchLimitNodeProperty property) {
+    Node node = mock(Node.class);
+    when(node.getNodeProperty(SearchLimitNodeProperty.class)).thenReturn(property);
+    Jenkins jenkins = mock(Jenkins.class);
+    when(jenkins.getNode(SLAVE_NODE)).thenReturn(node);
+    mockStatic(Jenkins.class);
+    when(Jenkins.getInstance()).thenReturn(jenkins);
+    return jenkins;
+  }
+}